@@ -10,8 +10,12 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Scanner;
-import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.swing.JOptionPane;
 
 /**
@@ -24,8 +28,7 @@ import javax.swing.JOptionPane;
  */
 public class Analyzer {
     
-    private Wav2TextConverter wv;
-    private LPCAnalyzer lpc;
+    private FeaturePipeline pipeline;
     private VectorQuantizer vq;
     
     private Vector input;       
@@ -36,6 +39,8 @@ public class Analyzer {
     
     private Scanner s;
     private double[] weights;
+    private int threads;        // The number of speech samples processed at a time
+    private boolean debug;
     
     /**
      * Class constructor for Analyzer. 
@@ -53,40 +58,30 @@ public class Analyzer {
         this.codeBookSize = codeBookSize;
         this.input = input;
         this.weights = weights;
+        this.pipeline = new FeaturePipeline(order, frameLength, frameShift);
+        this.threads = Runtime.getRuntime().availableProcessors();
     }
     
     /**
-     * Read the input from file <code>filename</code>. The input file here refers 
-     * to the file containing the sample values of a speech signal. The sample values
-     * are obtained with the help of Wav2TextConverter
-     * @param filename  The name of the file from which the input has to be read
-     * @see Wav2TextConverter
+     * Sets the number of speech samples whose feature vectors are extracted at a time.
+     * By default, one per available processor.
+     * @param threads   The number of worker threads
      */
-    private void readInput(String filename){
-        String in;
-        StringTokenizer strtok;
-        Scanner scanner = null;
-
-        int i;
-        double[] temp;
-        
-        try {
-            scanner = new Scanner(new File(filename)).useDelimiter("\\n");
-        } catch (FileNotFoundException ex) {
-            System.err.println("WARNING: "+ex.getMessage());
-        }
-        while(scanner.hasNext()){
-            i = 0;
-            temp = new double[order];
-            in = scanner.next();
-            strtok = new StringTokenizer(in," ");
-            while(strtok.hasMoreTokens()){
-                temp[i] = Double.parseDouble(strtok.nextToken());
-                i++;
-            }
-            input.addElement(temp);
-        }
-        scanner.close();
+    public void setThreads(int threads){
+        this.threads = Math.max(threads, 1);
+    }
+    
+    /**
+     * Records the sample values and the cepstral coefficients of each speech sample
+     * in <code>data.dat</code> and <code>cep.dat</code>, and the clusters of the final
+     * codebook in <code>CLUSTERS.txt</code>. This is used for debugging.
+     * The speech samples are then processed one at a time.
+     * @param debug     If <code>true</code>, the intermediate files are written
+     */
+    public void setDebug(boolean debug){
+        this.debug = debug;
+        if(debug) pipeline.setDebug("data.dat", "cep.dat");
+        else pipeline.setDebug(null, null);
     }
     
     /**
@@ -95,6 +90,7 @@ public class Analyzer {
      */
     private void runVectorQuantization(String codebook){
         vq = new VectorQuantizer(order,codeBookSize,input, weights);
+        if(debug) vq.setListener(new ClusterWriter("CLUSTERS.txt"));
         vq.generateCodeBook(codebook);
     }
 
@@ -120,10 +116,51 @@ public class Analyzer {
         }
     }
     
+    /**
+     * Extracts the feature vectors of the speech samples <code>files</code> on a pool
+     * of <code>threads</code> workers. Each speech sample is processed in memory by its
+     * own worker, and the feature vectors are recorded in <code>input</code> in the 
+     * order of <code>files</code>, whatever order the workers finish in.
+     * @param files     The names of the speech samples
+     */
+    private void extract(Vector files){
+        ExecutorService workers = Executors.newFixedThreadPool(debug ? 1 : threads);
+        Vector<Future<double[][]>> results = new Vector<Future<double[][]>>();
+        double[][] features;
+        int i = 0;      // The speech sample whose feature vectors are being recorded
+        try {
+            for(i=0;i<files.size();i++){
+                final String in = (String) files.elementAt(i);
+                results.addElement(workers.submit(new Callable<double[][]>(){
+                    public double[][] call() throws IOException{
+                        return pipeline.extract(in);
+                    }
+                }));
+            }
+            for(i=0;i<files.size();i++){
+                System.out.println("Processing file: " + files.elementAt(i));
+                // Record the feature vectors
+                features = results.elementAt(i).get();
+                for(int j=0;j<features.length;j++){
+                    input.addElement(features[j]);
+                }
+            }
+        } catch (InterruptedException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(-1);
+        } catch (ExecutionException ex) {
+            System.err.println(files.elementAt(i) + ": " + ex.getCause());
+            System.exit(-1);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+    
     /**
      * Method to start analysis procedure. The method starts by extracting the sample values
-     * into the file <code>data.dat</code>. These values are used by LPCAnalyzer to 
-     * extract the feature vectors of the speech sample. After extracting the feature vectors 
+     * of each speech sample. These values are used by LPCAnalyzer to 
+     * extract the feature vectors of the speech sample. The speech samples are processed
+     * in parallel. After extracting the feature vectors 
      * a codebook is generated using the VectorQuantizer class. <code>dump()</code> dumps the
      * cepstral coefficients into a file by name 'dump.dat'
      * @param inputFileName     The name of the input file containing the list of speech samples
@@ -134,7 +171,7 @@ public class Analyzer {
      * @see VectorQuantizer
      */
     public void run(String inputFileName, String directory, String codebook) {
-        String in;
+        Vector files = new Vector();
         try {
             s = new Scanner(new File(inputFileName));
         } catch (FileNotFoundException ex) {
@@ -143,22 +180,11 @@ public class Analyzer {
         }
             System.out.println("****");
         while(s.hasNext()){
-            in = directory +"\\"+ s.next();
-            System.out.println("Processing file: " + in);
-            try {
-                // Convert speech signal to text(sample values)
-                wv = new Wav2TextConverter(in, "data.dat");
-                wv.convert();
-                // Extract the feature vectors
-                lpc = new LPCAnalyzer(order,frameShift,frameLength,"cep.dat");
-                lpc.start("data.dat");
-                // Record the feature vectors
-                readInput("cep.dat");
-            } catch (IOException ex) {
-                System.err.println(ex.getMessage());
-                System.exit(-1);
-            }
+            files.addElement(directory +"\\"+ s.next());
         }
+        s.close();
+        // Extract the feature vectors
+        extract(files);
         // Dump the cepstral coefficients
         dump();
         // Generate codebook using VQ
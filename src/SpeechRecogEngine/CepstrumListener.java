@@ -0,0 +1,21 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+/**
+ * Receives the cepstral coefficients of each frame as LPCAnalyzer extracts them
+ * from a stream of sample values.
+ * @see LPCAnalyzer#push(double[], int, int)
+ * @author Krishna Brahmam
+ */
+public interface CepstrumListener {
+
+    /**
+     * Called when a frame has been analyzed
+     * @param frame     The number of the frame 0, 1, 2...
+     * @param cepstrum  The cepstral coefficients c[1..p] of the frame
+     */
+    public void cepstrumExtracted(long frame, double[] cepstrum);
+}
@@ -0,0 +1,127 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the clusters found by VectorQuantizer to a text file: for each region,
+ * the line <code>Cluster: i</code> followed by the first two elements of each input
+ * vector in the region. This is used for debugging.
+ * <p>
+ * By default only the clusters of the final codebook are written. The clusters of
+ * every iteration can be written too; a copy of the regions is then taken and the
+ * file is rewritten on a background thread, so that training does not wait for it.
+ * @see VectorQuantizer#setListener(CodeBookListener)
+ * @author Krishna Brahmam
+ */
+public class ClusterWriter implements CodeBookListener {
+
+    private String filename;            // The file to write the clusters in
+    private boolean everyIteration;     // Write the clusters after every iteration
+    private ExecutorService writer;     // The thread writing the clusters of the iterations
+
+    /**
+     * Class constructor for a ClusterWriter writing the clusters of the final codebook
+     * @param filename  The file to write the clusters in
+     */
+    public ClusterWriter(String filename){
+        this(filename, false);
+    }
+
+    /**
+     * Class constructor for ClusterWriter
+     * @param filename          The file to write the clusters in
+     * @param everyIteration    If <code>true</code>, the clusters are also written after every
+     *                          iteration, on a background thread
+     */
+    public ClusterWriter(String filename, boolean everyIteration){
+        this.filename = filename;
+        this.everyIteration = everyIteration;
+    }
+
+    public void iterationCompleted(int iteration, double distortion, FeatureMatrix codebook,
+            FeatureMatrix input, int[] assignment){
+        if(!everyIteration){
+            return;
+        }
+        if(writer == null){
+            writer = Executors.newSingleThreadExecutor();
+        }
+        final int size = codebook.rows();
+        final FeatureMatrix x = input;
+        final int[] regions = assignment.clone();
+        writer.execute(new Runnable() {
+            public void run() {
+                write(size, x, regions);
+            }
+        });
+    }
+
+    public void codeBookGenerated(FeatureMatrix codebook, FeatureMatrix input, int[] assignment){
+        if(writer != null){
+            writer.shutdown();
+            try {
+                writer.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        write(codebook.rows(), input, assignment);
+    }
+
+    /**
+     * Writes the input vectors of each region, in order within each region
+     * @param size          The number of regions
+     * @param input         The input set of feature vectors
+     * @param assignment    The region each input vector is classified into
+     */
+    private void write(int size, FeatureMatrix input, int[] assignment){
+        // Sort the input vectors by region
+        int n = assignment.length;
+        int[] start = new int[size+1];
+        int[] order = new int[n];
+        for (int r = 0; r < n; r++) {
+            start[assignment[r]+1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            start[i+1] += start[i];
+        }
+        int[] next = start.clone();
+        for (int r = 0; r < n; r++) {
+            order[next[assignment[r]]++] = r;
+        }
+        BufferedWriter bfwr = null;
+        try {
+            bfwr = new BufferedWriter(new FileWriter(filename));
+            int row;
+            for (int i = 0; i < size; i++) {
+                bfwr.write("Cluster: "+i);
+                bfwr.newLine();
+                for(int j=start[i];j<start[i+1];j++){
+                    row = order[j];
+                    bfwr.write(input.get(row,0)+","+input.get(row,1));
+                    bfwr.newLine();
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+        } finally {
+            try {
+                if (bfwr != null) {
+                    bfwr.close();
+                }
+            } catch (IOException ex) {
+                System.err.println(ex.getMessage());
+            }
+        }
+    }
+}
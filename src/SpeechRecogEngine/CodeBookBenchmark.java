@@ -0,0 +1,154 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.io.FileNotFoundException;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * A class for finding the size of codebook above which CodeBookTree quantizes
+ * feature vectors faster than the linear scan. Codebooks of 16 to 4096 vectors are
+ * drawn from the first half of a set of feature vectors, and the second half is then
+ * quantized with both. The feature vectors are read from a file, one per line with
+ * 'tab' as a delimiter, or generated around random cluster centres if no file is given.
+ * <p>
+ * Usage: <code>java SpeechRecogEngine.CodeBookBenchmark [order] [file]</code>
+ * @see CodeBookTree
+ * @author Krishna Brahmam
+ */
+public class CodeBookBenchmark {
+
+    private static final int ROUNDS = 5;        // The number of timed rounds for each size
+
+    private int order;
+    private FeatureMatrix input;
+    private TokhuraDistance kernel;
+    private Random random = new Random(1);
+
+    /**
+     * Class constructor for CodeBookBenchmark
+     * @param order     The size of the feature vectors
+     * @param input     The feature vectors
+     * @param weights   The weights used in Tokhura's distance. 'null' for Euclidean distance.
+     */
+    public CodeBookBenchmark(int order, FeatureMatrix input, double[] weights){
+        this.order = order;
+        this.input = input;
+        this.kernel = new TokhuraDistance(order, weights);
+    }
+
+    /**
+     * Generates <code>n</code> feature vectors around 64 random cluster centres
+     * @param order     The size of the feature vectors
+     * @param n         The number of feature vectors
+     * @return          The feature vectors
+     */
+    public static FeatureMatrix generate(int order, int n){
+        Random random = new Random(0);
+        double[][] centres = new double[64][order];
+        for(int i=0;i<centres.length;i++){
+            for(int j=0;j<order;j++){
+                centres[i][j] = random.nextGaussian()/(j+1);
+            }
+        }
+        FeatureMatrix m = new FeatureMatrix(order, n);
+        double[] temp = new double[order];
+        double[] c;
+        for(int i=0;i<n;i++){
+            c = centres[random.nextInt(centres.length)];
+            for(int j=0;j<order;j++){
+                temp[j] = c[j] + 0.2*random.nextGaussian()/(j+1);
+            }
+            m.addRow(temp);
+        }
+        return m;
+    }
+
+    /**
+     * Draws a codebook of <code>size</code> distinct feature vectors from the first half
+     * of the input
+     * @param size      The size of the codebook
+     * @return          The codebook
+     */
+    private FeatureMatrix drawCodeBook(int size){
+        int n = input.rows()/2;
+        int[] perm = new int[n];
+        for(int i=0;i<n;i++){
+            perm[i] = i;
+        }
+        FeatureMatrix codebook = new FeatureMatrix(order, size);
+        int j, t;
+        for(int i=0;i<size;i++){
+            j = i + random.nextInt(n - i);
+            t = perm[i];
+            perm[i] = perm[j];
+            perm[j] = t;
+            codebook.addRow(input.data(), perm[i]*order);
+        }
+        return codebook;
+    }
+
+    /**
+     * Quantizes the second half of the input against a codebook of <code>size</code> 
+     * vectors with the linear scan and with the tree, and prints the time taken per 
+     * feature vector by each.
+     * @param size      The size of the codebook
+     */
+    public void run(int size){
+        FeatureMatrix codebook = drawCodeBook(size);
+        CodeBookTree tree = new CodeBookTree(codebook, kernel);
+        double[] x = input.data();
+        int first = input.rows()/2;
+        int n = input.rows() - first;
+        int[] scanned = new int[n];
+        int[] searched = new int[n];
+        long scanTime = Long.MAX_VALUE;
+        long treeTime = Long.MAX_VALUE;
+        long start;
+        for(int round=0;round<ROUNDS;round++){
+            start = System.nanoTime();
+            for(int i=0;i<n;i++){
+                scanned[i] = CodeBookTree.scan(codebook, kernel, x, (first+i)*order, i > 0 ? scanned[i-1] : 0);
+            }
+            scanTime = Math.min(scanTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            for(int i=0;i<n;i++){
+                searched[i] = tree.nearest(x, (first+i)*order, i > 0 ? searched[i-1] : 0);
+            }
+            treeTime = Math.min(treeTime, System.nanoTime() - start);
+        }
+        for(int i=0;i<n;i++){
+            if(scanned[i] != searched[i]){
+                System.err.println("Mismatch at vector "+(first+i)+": "+scanned[i]+" "+searched[i]);
+                break;
+            }
+        }
+        System.out.println(String.format("%6d %12.3f %12.3f %8.2f", size,
+                scanTime/1000.0/n, treeTime/1000.0/n, (double) scanTime/treeTime));
+    }
+
+    public static void main(String args[]) throws FileNotFoundException{
+        int order = 12;
+        FeatureMatrix input;
+        if(args.length > 0){
+            order = Integer.parseInt(args[0]);
+        }
+        if(args.length > 1){
+            Vector v = new Vector();
+            new Test(order).readInput(args[1], v);
+            input = new FeatureMatrix(v, order);
+        }
+        else{
+            input = generate(order, 40000);
+        }
+        CodeBookBenchmark benchmark = new CodeBookBenchmark(order, input, null);
+        System.out.println("Feature vectors: "+input.rows());
+        System.out.println("  size    scan (us)    tree (us)  speedup");
+        for(int size=16;size<=4096 && size<=input.rows()/2;size*=2){
+            benchmark.run(size);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes VQ codebooks in a compact binary format. All values are
+ * little-endian:
+ * <pre>
+ *   int     magic      "VQCB"
+ *   int     version    1
+ *   int     p          The size of each codebook vector
+ *   int     size       The number of codebook vectors
+ *   int     crc        CRC-32 of the weights and the codebook vectors
+ *   int     reserved   0
+ *   double  weights[p] The weights of Tokhura's distance the codebook was made with
+ *   double  y[size][p] The codebook vectors, row after row
+ * </pre>
+ * The file is memory-mapped when read and the codebook vectors are copied into a
+ * FeatureMatrix in one bulk transfer. Codebooks written by earlier versions, as a
+ * serialized Vector of <code>double[]</code>, are still read.
+ * @see VectorQuantizer
+ * @see Recognizer
+ * @author Krishna Brahmam
+ */
+public class CodeBookFile {
+
+    private static final int MAGIC = 0x42435156;    // "VQCB" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER = 24;           // The size of the header in bytes
+
+    private FeatureMatrix codebook; // The codebook vectors
+    private double[] weights;       // The weights of Tokhura's distance. null if unknown
+
+    /**
+     * Class constructor for CodeBookFile
+     * @param codebook  The codebook vectors
+     * @param weights   The weights of Tokhura's distance. 'null' if unknown.
+     */
+    private CodeBookFile(FeatureMatrix codebook, double[] weights){
+        this.codebook = codebook;
+        this.weights = weights;
+    }
+
+    /**
+     * Get the codebook vectors
+     * @return  The codebook vectors
+     */
+    public FeatureMatrix getCodeBook(){
+        return codebook;
+    }
+
+    /**
+     * Get the weights of Tokhura's distance the codebook was made with
+     * @return  The weights, or <code>null</code> for a codebook in the old format
+     */
+    public double[] getWeights(){
+        return weights;
+    }
+
+    /**
+     * Writes a codebook to the file <code>filename</code>
+     * @param filename  The name of the codebook file
+     * @param codebook  The codebook vectors
+     * @param weights   The weights of Tokhura's distance. 'null' for Euclidean distance.
+     * @throws java.io.IOException
+     */
+    public static void write(String filename, FeatureMatrix codebook, double[] weights) throws IOException{
+        int p = codebook.dimension();
+        int size = codebook.rows();
+        ByteBuffer body = ByteBuffer.allocate(8*p*(size+1)).order(ByteOrder.LITTLE_ENDIAN);
+        for(int i=0;i<p;i++){
+            body.putDouble(weights == null ? 1 : weights[i]);
+        }
+        body.asDoubleBuffer().put(codebook.data(), 0, size*p);
+        body.position(0);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(p).putInt(size);
+        header.putInt((int) crc.getValue()).putInt(0);
+        header.flip();
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            while(header.hasRemaining()) channel.write(header);
+            while(body.hasRemaining()) channel.write(body);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads the codebook file <code>filename</code>, in either format
+     * @param filename  The name of the codebook file
+     * @return          The codebook read
+     * @throws java.io.IOException  if the file cannot be read or is damaged
+     */
+    public static CodeBookFile read(String filename) throws IOException{
+        FileInputStream in = new FileInputStream(filename);
+        try {
+            FileChannel channel = in.getChannel();
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining() && channel.read(header) >= 0);
+            header.flip();
+            if(header.remaining() < HEADER || header.getInt() != MAGIC){
+                return readSerialized(filename);
+            }
+            int version = header.getInt();
+            int p = header.getInt();
+            int size = header.getInt();
+            int crc = header.getInt();
+            if(version != VERSION){
+                throw new IOException(filename+": unsupported codebook version "+version);
+            }
+            if(p <= 0 || size < 0 || HEADER + 8L*p*(size+1) != length){
+                throw new IOException(filename+": damaged codebook file");
+            }
+            ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, length - HEADER);
+            CRC32 check = new CRC32();
+            check.update(body);
+            if((int) check.getValue() != crc){
+                throw new IOException(filename+": codebook checksum mismatch");
+            }
+            body.position(0);
+            body.order(ByteOrder.LITTLE_ENDIAN);
+            double[] weights = new double[p];
+            double[] data = new double[size*p];
+            body.asDoubleBuffer().get(weights).get(data);
+            return new CodeBookFile(new FeatureMatrix(p, data), weights);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a codebook written as a serialized Vector of <code>double[]</code>
+     * @param filename  The name of the codebook file
+     * @return          The codebook read
+     * @throws java.io.IOException
+     */
+    private static CodeBookFile readSerialized(String filename) throws IOException{
+        ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(filename));
+        try {
+            Vector v = (Vector) inputStream.readObject();
+            int p = v.isEmpty() ? 0 : ((double[]) v.elementAt(0)).length;
+            return new CodeBookFile(new FeatureMatrix(v, p), null);
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(filename+": not a codebook file");
+        } catch (ClassCastException ex) {
+            throw new IOException(filename+": not a codebook file");
+        } finally {
+            inputStream.close();
+        }
+    }
+}
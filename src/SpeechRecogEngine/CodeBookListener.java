@@ -0,0 +1,35 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+/**
+ * Receives the progress of the training of a codebook in VectorQuantizer. The
+ * arrays handed to the listener are those used by the training, so they must be
+ * copied if they are needed after the call returns.
+ * @see VectorQuantizer#setListener(CodeBookListener)
+ * @see ClusterWriter
+ * @author Krishna Brahmam
+ */
+public interface CodeBookListener {
+
+    /**
+     * Called at the end of each iteration of the generalized Lloyd's algorithm
+     * @param iteration     The number of splits of the codebook made so far
+     * @param distortion    The overall average distortion after the iteration
+     * @param codebook      The codebook after the iteration
+     * @param input         The input set of feature vectors
+     * @param assignment    The region each input vector was classified into
+     */
+    public void iterationCompleted(int iteration, double distortion, FeatureMatrix codebook,
+            FeatureMatrix input, int[] assignment);
+
+    /**
+     * Called when the final codebook has been generated
+     * @param codebook      The final codebook
+     * @param input         The input set of feature vectors
+     * @param assignment    The region each input vector was classified into last
+     */
+    public void codeBookGenerated(FeatureMatrix codebook, FeatureMatrix input, int[] assignment);
+}
@@ -0,0 +1,267 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.util.Arrays;
+
+/**
+ * A k-d tree over the vectors of a VQ codebook, for finding the codebook vector
+ * nearest to a feature vector in Tokhura's distance without scanning the whole
+ * codebook. Each node splits its codebook vectors at the median of the element with
+ * the largest weighted spread. A subtree is searched only if the weighted distance
+ * from the feature vector to its cell is no more than that of the nearest codebook
+ * vector found so far, so the search is exact. Of equally near codebook vectors, the
+ * one with the lowest index is found, as in the linear scan.
+ * <p>
+ * The tree pays off only for large codebooks; <code>CodeBookBenchmark</code> finds
+ * the size above which it is faster than the scan.
+ * @see Recognizer
+ * @see CodeBookBenchmark
+ * @author Krishna Brahmam
+ */
+public class CodeBookTree {
+
+    private static final int LEAF = 8;          // The largest number of codebook vectors in a leaf
+    private static final double MARGIN = 1e-9;  // The relative margin by which a cell must be farther
+
+    private TokhuraDistance kernel; // The distance between feature vectors
+    private int p;                  // The size of the feature vectors
+    private double[] weights;       // The weight of each element in the distance
+    private double[] points;        // The codebook vectors in the order of the leaves
+    private int[] ids;              // The index in the codebook of each vector in points
+    private int[] positions;        // The position in points of each codebook vector
+
+    private int nodes;              // The number of nodes
+    private int[] dim;              // The element each node splits on
+    private double[] split;         // The value each node splits at
+    private int[] left;             // The left child of each node, -1 for a leaf
+    private int[] right;            // The right child of each node
+    private int[] lo;               // The first vector of each leaf in points
+    private int[] hi;               // The vector after the last one of each leaf
+
+    /**
+     * Class constructor for CodeBookTree
+     * @param codebook  The codebook. It is copied, so later changes are not seen by the tree.
+     * @param kernel    Tokhura's distance to search with
+     */
+    public CodeBookTree(FeatureMatrix codebook, TokhuraDistance kernel){
+        this.kernel = kernel;
+        this.p = codebook.dimension();
+        int n = codebook.rows();
+        weights = new double[p];
+        for(int i=0;i<p;i++){
+            weights[i] = kernel.getWeight(i);
+        }
+        int[] perm = new int[n];
+        for(int i=0;i<n;i++){
+            perm[i] = i;
+        }
+        int size = n/2 + 1;
+        dim = new int[size];
+        split = new double[size];
+        left = new int[size];
+        right = new int[size];
+        lo = new int[size];
+        hi = new int[size];
+        nodes = 0;
+        build(codebook.data(), perm, 0, n);
+        // Lay out the codebook vectors leaf after leaf
+        points = new double[n*p];
+        ids = perm;
+        positions = new int[n];
+        for(int i=0;i<n;i++){
+            System.arraycopy(codebook.data(), perm[i]*p, points, i*p, p);
+            positions[perm[i]] = i;
+        }
+    }
+
+    /**
+     * Builds the subtree holding the codebook vectors <code>perm[from..to-1]</code>
+     * @param data  The codebook vectors
+     * @param perm  The indices of the codebook vectors, rearranged as the tree is built
+     * @param from  The first index of the subtree in <code>perm</code>
+     * @param to    The index after the last one of the subtree in <code>perm</code>
+     * @return      The node at the root of the subtree
+     */
+    private int build(double[] data, int[] perm, int from, int to){
+        int node = nodes++;
+        if(node == dim.length){
+            grow();
+        }
+        lo[node] = from;
+        hi[node] = to;
+        left[node] = -1;
+        right[node] = -1;
+        if(to - from <= LEAF){
+            return node;
+        }
+        // Split on the element with the largest weighted spread
+        int d = 0;
+        double spread = -1;
+        double min, max, v;
+        for(int j=0;j<p;j++){
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            for(int i=from;i<to;i++){
+                v = data[perm[i]*p+j];
+                if(v < min) min = v;
+                if(v > max) max = v;
+            }
+            v = weights[j]*(max-min)*(max-min);
+            if(v > spread){
+                spread = v;
+                d = j;
+            }
+        }
+        int mid = (from + to) >>> 1;
+        select(data, perm, from, to, mid, d);
+        dim[node] = d;
+        split[node] = data[perm[mid]*p+d];
+        int l = build(data, perm, from, mid);
+        int r = build(data, perm, mid, to);
+        left[node] = l;
+        right[node] = r;
+        return node;
+    }
+
+    /**
+     * Rearranges <code>perm[from..to-1]</code> so that element <code>d</code> of the codebook
+     * vector at <code>k</code> is the one it would be if they were sorted on it, with no
+     * larger one before and no smaller one after.
+     */
+    private void select(double[] data, int[] perm, int from, int to, int k, int d){
+        int l = from, r = to - 1, i, j, t;
+        double pivot;
+        while(l < r){
+            pivot = data[perm[(l + r) >>> 1]*p+d];
+            i = l;
+            j = r;
+            while(i <= j){
+                while(data[perm[i]*p+d] < pivot) i++;
+                while(data[perm[j]*p+d] > pivot) j--;
+                if(i <= j){
+                    t = perm[i];
+                    perm[i] = perm[j];
+                    perm[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if(k <= j) r = j;
+            else if(k >= i) l = i;
+            else break;
+        }
+    }
+
+    /**
+     * Doubles the space for the nodes
+     */
+    private void grow(){
+        int size = 2*dim.length;
+        dim = Arrays.copyOf(dim, size);
+        split = Arrays.copyOf(split, size);
+        left = Arrays.copyOf(left, size);
+        right = Arrays.copyOf(right, size);
+        lo = Arrays.copyOf(lo, size);
+        hi = Arrays.copyOf(hi, size);
+    }
+
+    /**
+     * Finds the codebook vector nearest to the feature vector <code>x</code>
+     * @param x     The array holding the feature vector
+     * @param xo    The position of the feature vector in <code>x</code>
+     * @param start The index of a codebook vector likely to be near, usually that of the
+     *              previous frame. Its distance bounds the search from the start.
+     * @return      The index of the nearest codebook vector
+     */
+    public int nearest(double[] x, int xo, int start){
+        Search s = new Search(x, xo);
+        s.index = start;
+        s.min = kernel.distance2(x, xo, points, positions[start]*p);
+        s.search(0, 0);
+        return s.index;
+    }
+
+    /**
+     * Finds the codebook vector nearest to the feature vector <code>x</code> by scanning
+     * the whole codebook. The squared distance to each codebook vector is given up as 
+     * soon as it exceeds the smallest so far.
+     * @param codebook  The codebook
+     * @param kernel    The distance to search with
+     * @param x         The array holding the feature vector
+     * @param xo        The position of the feature vector in <code>x</code>
+     * @param start     The index of a codebook vector likely to be near, usually that of the
+     *                  previous frame. The scan starts from it.
+     * @return          The index of the nearest codebook vector, the lowest of equally near ones
+     */
+    public static int scan(FeatureMatrix codebook, DistanceKernel kernel, double[] x, int xo, int start){
+        int p = codebook.dimension();
+        int index = start;
+        double[] y = codebook.data();
+        double min_distance = kernel.distance2(y, index*p, x, xo);
+        double temp;
+        for(int i=0;i<codebook.rows();i++){
+            if(i == start){
+                continue;
+            }
+            temp = kernel.distance2(y, i*p, x, xo, min_distance);
+            if(min_distance > temp || (min_distance == temp && i < index)){
+                min_distance = temp;
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The state of one search: the nearest codebook vector so far and the offset of the
+     * feature vector from the cell being searched, in each element.
+     */
+    private class Search {
+        private double[] x;         // The array holding the feature vector
+        private int xo;             // The position of the feature vector in x
+        private double[] offset;    // The offset from the cell in each element
+        private int index;          // The index of the nearest codebook vector so far
+        private double min;         // Its squared distance
+
+        Search(double[] x, int xo){
+            this.x = x;
+            this.xo = xo;
+            this.offset = new double[p];
+        }
+
+        /**
+         * Searches the subtree at <code>node</code>
+         * @param node  The root of the subtree
+         * @param bound The squared distance from the feature vector to the cell of the node
+         */
+        void search(int node, double bound){
+            double temp;
+            if(left[node] < 0){
+                for(int i=lo[node];i<hi[node];i++){
+                    temp = kernel.distance2(x, xo, points, i*p, min);
+                    if(min > temp || (min == temp && ids[i] < index)){
+                        min = temp;
+                        index = ids[i];
+                    }
+                }
+                return;
+            }
+            int d = dim[node];
+            double diff = x[xo+d] - split[node];
+            int near = diff < 0 ? left[node] : right[node];
+            int far = diff < 0 ? right[node] : left[node];
+            search(near, bound);
+            // The cell of the far child is at least |diff| away in element d
+            double old = offset[d];
+            double farBound = bound + weights[d]*(diff*diff - old*old);
+            if(farBound - MARGIN*farBound <= min){
+                offset[d] = diff;
+                search(far, farBound);
+                offset[d] = old;
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+/**
+ * An immutable form of a Hidden Markov Model for scoring observation sequences.
+ * The probabilities and their logarithms are kept in flat arrays: b by observation
+ * symbol, and A as the list of the states that can move to each state, with the
+ * probabilities of those moves. A Bakis model has only a few such states per state,
+ * so the forward procedure and the Viterbi algorithm only visit the transitions the
+ * model can make. The model is compiled once, when it is loaded, and reused for every
+ * observation sequence. It is not changed by scoring, so it can score sequences on 
+ * several threads at once, each with its own scratch array.
+ * @see Model
+ * @see HMMRecognizer
+ * @author Krishna Brahmam
+ */
+public final class CompiledModel {
+
+    private final int N;                // The number of states
+    private final int M;                // The number of observation symbols
+    private final double[] pi;          // pi(i)
+    private final double[] logPi;       // log(pi(i))
+    private final int[] start;          // The transitions to state j are start[j]..start[j+1]-1
+    private final int[] from;           // The state each transition is from
+    private final double[] a;           // The probability of each transition
+    private final double[] logA;        // The logarithm of the probability of each transition
+    private final double[] b;           // b(j,k) at k*N+j, by the observation symbol
+    private final double[] logB;        // log(b(j,k)) at k*N+j
+
+    /**
+     * Class constructor for CompiledModel
+     * @param lambda    The Hidden Markov Model. Later changes to it are not seen by the
+     *                  compiled model.
+     */
+    public CompiledModel(Model lambda){
+        N = lambda.getNumberOfStates();
+        M = lambda.getNumberOfObservations();
+        pi = new double[N];
+        logPi = new double[N];
+        b = new double[M*N];
+        logB = new double[M*N];
+        for(int i=0;i<N;i++){
+            pi[i] = lambda.pi(i);
+            logPi[i] = Math.log(pi[i]);
+            for(int k=0;k<M;k++){
+                b[k*N+i] = lambda.b(i, k);
+                logB[k*N+i] = Math.log(b[k*N+i]);
+            }
+        }
+        // Keep only the transitions with a non-zero probability
+        int count = 0;
+        for(int i=0;i<N;i++){
+            for(int j=0;j<N;j++){
+                if(lambda.a(i, j) != 0) count++;
+            }
+        }
+        start = new int[N+1];
+        from = new int[count];
+        a = new double[count];
+        logA = new double[count];
+        count = 0;
+        for(int j=0;j<N;j++){
+            start[j] = count;
+            for(int i=0;i<N;i++){
+                if(lambda.a(i, j) != 0){
+                    from[count] = i;
+                    a[count] = lambda.a(i, j);
+                    logA[count] = Math.log(a[count]);
+                    count++;
+                }
+            }
+        }
+        start[N] = count;
+    }
+
+    /**
+     * Get the number of states
+     * @return  The number of states
+     */
+    public int getNumberOfStates(){
+        return N;
+    }
+
+    /**
+     * Get the number of observation symbols
+     * @return  The number of observation symbols
+     */
+    public int getNumberOfObservations(){
+        return M;
+    }
+
+    /**
+     * Get the number of transitions with a non-zero probability
+     * @return  The number of transitions
+     */
+    public int getNumberOfTransitions(){
+        return start[N];
+    }
+
+    /**
+     * Get the size of the scratch array needed by the forward procedure and the
+     * Viterbi algorithm
+     * @return  The size of the scratch array, 2N
+     */
+    public int getScratchSize(){
+        return 2*N;
+    }
+
+    /**
+     * Performs the forward procedure with scaling, as in
+     * <code>HMMAnalyzer.logForwardProcedure()</code>, keeping two rows of alpha
+     * @param obs   The observation sequence
+     * @return      The logarithm of the probability of the observation sequence given
+     *              the model. <code>Double.NEGATIVE_INFINITY</code> if it is impossible.
+     * @throws IllegalArgumentException     if an observation symbol is not of the model
+     */
+    public double logForward(int[] obs){
+        return logForward(obs, new double[getScratchSize()]);
+    }
+
+    /**
+     * Performs the forward procedure with scaling, keeping the two rows of alpha in
+     * <code>scratch</code>
+     * @param obs       The observation sequence
+     * @param scratch   An array of at least <code>getScratchSize()</code> elements
+     * @return          The logarithm of the probability of the observation sequence 
+     *                  given the model. <code>Double.NEGATIVE_INFINITY</code> if it is 
+     *                  impossible.
+     * @throws IllegalArgumentException     if an observation symbol is not of the model
+     */
+    public double logForward(int[] obs, double[] scratch){
+        check(obs);
+        if(obs.length == 0){
+            return Double.NEGATIVE_INFINITY;
+        }
+        double logProbability = 0;
+        double step;
+        for(int t=0;t<obs.length;t++){
+            step = forwardStep(obs, t, scratch);
+            if(step == Double.NEGATIVE_INFINITY){
+                return Double.NEGATIVE_INFINITY;
+            }
+            logProbability += step;
+        }
+        return logProbability;
+    }
+
+    /**
+     * Carries out one time step of the forward procedure with scaling. The row of alpha
+     * of time <code>t</code> is kept in <code>scratch</code> at <code>(t%2)*N</code>, 
+     * and is found from the row of time <code>t-1</code>, so the steps must be carried 
+     * out in order from <code>t = 0</code>. The logarithms returned by the steps add up 
+     * to the logarithm of the probability of the observation sequence up to time 
+     * <code>t</code>. The observation symbols are not checked, so the sequence should
+     * be checked once with <code>check()</code> before the first step.
+     * @param obs       The observation sequence
+     * @param t         The time step
+     * @param scratch   An array of at least <code>getScratchSize()</code> elements
+     * @return          The logarithm of the sum of alpha at time <code>t</code> before
+     *                  scaling. <code>Double.NEGATIVE_INFINITY</code> if the observation 
+     *                  sequence up to time <code>t</code> is impossible.
+     */
+    public double forwardStep(int[] obs, int t, double[] scratch){
+        int k = obs[t];
+        int alpha = (t & 1)*N;          // The row of alpha at t in scratch
+        int previous = N - alpha;       // The row of alpha at t-1 in scratch
+        double sum, total = 0;
+        if(t == 0){
+            // Initialization
+            for(int i=0;i<N;i++){
+                scratch[alpha+i] = pi[i] * b[k*N+i];
+                total += scratch[alpha+i];
+            }
+        }
+        else{
+            // Induction
+            for(int j=0;j<N;j++){
+                sum = 0;
+                for(int n=start[j];n<start[j+1];n++){
+                    sum += scratch[previous+from[n]] * a[n];
+                }
+                scratch[alpha+j] = sum * b[k*N+j];
+                total += scratch[alpha+j];
+            }
+        }
+        // Scaling
+        if(total == 0){
+            return Double.NEGATIVE_INFINITY;
+        }
+        double scale = 1/total;
+        for(int i=0;i<N;i++){
+            scratch[alpha+i] *= scale;
+        }
+        return Math.log(total);
+    }
+
+    /**
+     * Performs the Viterbi algorithm on the logarithms of the probabilities, keeping
+     * two rows of delta
+     * @param obs   The observation sequence
+     * @return      The logarithm of the probability of the optimal state sequence given
+     *              the model and the observation sequence
+     * @throws IllegalArgumentException     if an observation symbol is not of the model
+     */
+    public double logViterbi(int[] obs){
+        return logViterbi(obs, null, new double[getScratchSize()]);
+    }
+
+    /**
+     * Performs the Viterbi algorithm on the logarithms of the probabilities, keeping
+     * the two rows of delta in <code>scratch</code>
+     * @param obs       The observation sequence
+     * @param scratch   An array of at least <code>getScratchSize()</code> elements
+     * @return          The logarithm of the probability of the optimal state sequence 
+     *                  given the model and the observation sequence
+     * @throws IllegalArgumentException     if an observation symbol is not of the model
+     */
+    public double logViterbi(int[] obs, double[] scratch){
+        return logViterbi(obs, null, scratch);
+    }
+
+    /**
+     * Performs the Viterbi algorithm on the logarithms of the probabilities, and finds
+     * the optimal state sequence if <code>path</code> is given
+     * @param obs   The observation sequence
+     * @param path  The array to hold the optimal state sequence, of the length of
+     *              <code>obs</code>. <code>null</code> if it is not needed, in which case
+     *              only two rows of delta are kept.
+     * @return      The logarithm of the probability of the optimal state sequence given
+     *              the model and the observation sequence
+     * @throws IllegalArgumentException     if an observation symbol is not of the model
+     */
+    public double logViterbi(int[] obs, int[] path){
+        return logViterbi(obs, path, new double[getScratchSize()]);
+    }
+
+    /**
+     * Performs the Viterbi algorithm, keeping the two rows of delta in <code>scratch</code>
+     * @param obs       The observation sequence
+     * @param path      The array to hold the optimal state sequence, or <code>null</code>
+     * @param scratch   An array of at least <code>getScratchSize()</code> elements
+     * @return          The logarithm of the probability of the optimal state sequence 
+     *                  given the model and the observation sequence
+     */
+    private double logViterbi(int[] obs, int[] path, double[] scratch){
+        check(obs);
+        int T = obs.length;
+        if(T == 0){
+            return Double.NEGATIVE_INFINITY;
+        }
+        int[][] psi = path == null ? null : new int[T][];
+        double pStar = Double.NEGATIVE_INFINITY;
+        for(int t=0;t<T;t++){
+            if(psi != null) psi[t] = new int[N];
+            pStar = viterbiStep(obs, t, scratch, psi == null ? null : psi[t]);
+        }
+        // Backtracking
+        if(path != null){
+            int delta = ((T-1) & 1)*N;
+            int qStar = 0;
+            for(int i=1;i<N;i++){
+                if(scratch[delta+i] > scratch[delta+qStar]){
+                    qStar = i;
+                }
+            }
+            path[T-1] = qStar;
+            for(int t=T-2;t>=0;t--){
+                path[t] = psi[t+1][path[t+1]];
+            }
+        }
+        return pStar;
+    }
+
+    /**
+     * Carries out one time step of the Viterbi algorithm. The row of delta of time 
+     * <code>t</code> is kept in <code>scratch</code> at <code>(t%2)*N</code>, and is 
+     * found from the row of time <code>t-1</code>, so the steps must be carried out in 
+     * order from <code>t = 0</code>. The observation symbols are not checked, so the
+     * sequence should be checked once with <code>check()</code> before the first step.
+     * @param obs       The observation sequence
+     * @param t         The time step
+     * @param scratch   An array of at least <code>getScratchSize()</code> elements
+     * @return          The largest delta at time <code>t</code>: the logarithm of the 
+     *                  probability of the best state sequence up to time <code>t</code>
+     */
+    public double viterbiStep(int[] obs, int t, double[] scratch){
+        return viterbiStep(obs, t, scratch, null);
+    }
+
+    /**
+     * Carries out one time step of the Viterbi algorithm
+     * @param obs       The observation sequence
+     * @param t         The time step
+     * @param scratch   An array of at least <code>getScratchSize()</code> elements
+     * @param psi       The array to hold the best previous state of each state, or 
+     *                  <code>null</code>
+     * @return          The largest delta at time <code>t</code>
+     */
+    private double viterbiStep(int[] obs, int t, double[] scratch, int[] psi){
+        int k = obs[t];
+        int delta = (t & 1)*N;          // The row of delta at t in scratch
+        int previous = N - delta;       // The row of delta at t-1 in scratch
+        double max, d;
+        int arg;
+        if(t == 0){
+            // Initialization
+            for(int i=0;i<N;i++){
+                scratch[delta+i] = logPi[i] + logB[k*N+i];
+            }
+        }
+        else{
+            // Recursion
+            for(int j=0;j<N;j++){
+                max = Double.NEGATIVE_INFINITY;
+                arg = 0;
+                for(int n=start[j];n<start[j+1];n++){
+                    d = scratch[previous+from[n]] + logA[n];
+                    if(d > max){
+                        max = d;
+                        arg = from[n];
+                    }
+                }
+                scratch[delta+j] = max + logB[k*N+j];
+                if(psi != null) psi[j] = arg;
+            }
+        }
+        max = scratch[delta];
+        for(int i=1;i<N;i++){
+            if(scratch[delta+i] > max){
+                max = scratch[delta+i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Checks that the observation symbols are those of the model
+     * @param obs   The observation sequence
+     * @throws IllegalArgumentException     if an observation symbol is not of the model
+     */
+    public void check(int[] obs){
+        for(int t=0;t<obs.length;t++){
+            if(obs[t] < 0 || obs[t] >= M){
+                throw new IllegalArgumentException("Illegal observation symbol "+obs[t]+" at "+t);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+/**
+ * A distance between feature vectors, used to quantize them against a codebook.
+ * Searches for the nearest codebook vector compare the squared distance, which is
+ * cheaper; the distance itself is only taken where distortion values are reported
+ * or bounds are needed.
+ * @see TokhuraDistance
+ * @see VectorQuantizer
+ * @see Recognizer
+ * @author Krishna Brahmam
+ */
+public interface DistanceKernel {
+
+    /**
+     * Computes the square of the distance between two feature vectors
+     * @param x     The array holding feature vector 1
+     * @param xo    The position of feature vector 1 in <code>x</code>
+     * @param y     The array holding feature vector 2
+     * @param yo    The position of feature vector 2 in <code>y</code>
+     * @return      The square of the distance between the two feature vectors
+     */
+    public double distance2(double[] x, int xo, double[] y, int yo);
+
+    /**
+     * Computes the square of the distance between two feature vectors, giving up as
+     * soon as it exceeds <code>limit</code>. Used in searches, where a feature vector 
+     * further than the nearest one so far is of no interest. Otherwise the value is 
+     * the same as that of <code>distance2(x, xo, y, yo)</code>.
+     * @param x     The array holding feature vector 1
+     * @param xo    The position of feature vector 1 in <code>x</code>
+     * @param y     The array holding feature vector 2
+     * @param yo    The position of feature vector 2 in <code>y</code>
+     * @param limit The largest squared distance of interest
+     * @return      The square of the distance between the two feature vectors, or 
+     *              some value greater than <code>limit</code> if it exceeds <code>limit</code>
+     */
+    public double distance2(double[] x, int xo, double[] y, int yo, double limit);
+
+    /**
+     * Computes the distance between two feature vectors. It must obey the triangle
+     * inequality.
+     * @param x     The array holding feature vector 1
+     * @param xo    The position of feature vector 1 in <code>x</code>
+     * @param y     The array holding feature vector 2
+     * @param yo    The position of feature vector 2 in <code>y</code>
+     * @return      The distance between the two feature vectors
+     */
+    public double distance(double[] x, int xo, double[] y, int yo);
+
+    /**
+     * Get the size of the feature vectors
+     * @return  The size of the feature vectors
+     */
+    public int dimension();
+}
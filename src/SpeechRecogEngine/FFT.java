@@ -0,0 +1,144 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fast Fourier Transform of real sequences whose length is a power of two. The
+ * sequence of length n is packed into n/2 complex values, transformed with a radix-2
+ * FFT and split into the n/2+1 non-redundant values of its spectrum. The bit-reversal
+ * and twiddle tables are computed once for each length and shared.
+ * @see LPCAnalyzer
+ * @author Krishna Brahmam
+ */
+public class FFT {
+
+    private static final ConcurrentHashMap<Integer, FFT> cache = new ConcurrentHashMap<Integer, FFT>();
+
+    private int n;              // The length of the real sequence
+    private int h;              // The number of complex values transformed, n/2
+    private int[] reverse;      // The bit-reversal permutation of 0..h-1
+    private double[] cos;       // cos(2*pi*k/n), k = 0..h-1
+    private double[] sin;       // sin(2*pi*k/n), k = 0..h-1
+
+    /**
+     * Class constructor for FFT
+     * @param n     The length of the real sequences to be transformed. A power of two, at least 4.
+     */
+    private FFT(int n){
+        if(n < 4 || (n & (n-1)) != 0){
+            throw new IllegalArgumentException("FFT length must be a power of two, at least 4: " + n);
+        }
+        this.n = n;
+        this.h = n/2;
+        reverse = new int[h];
+        int bits = Integer.numberOfTrailingZeros(h);
+        for(int i=0;i<h;i++){
+            reverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new double[h];
+        sin = new double[h];
+        for(int k=0;k<h;k++){
+            cos[k] = Math.cos(2*Math.PI*k/n);
+            sin[k] = Math.sin(2*Math.PI*k/n);
+        }
+    }
+
+    /**
+     * Get the FFT for real sequences of length <code>n</code>. The tables are shared
+     * by all the users of the same length.
+     * @param n     The length of the real sequences. A power of two, at least 4.
+     * @return      The FFT for the length <code>n</code>
+     */
+    public static FFT forSize(int n){
+        FFT fft = cache.get(n);
+        if(fft == null){
+            fft = new FFT(n);
+            FFT previous = cache.putIfAbsent(n, fft);
+            if(previous != null) fft = previous;
+        }
+        return fft;
+    }
+
+    /**
+     * Get the smallest power of two that is at least <code>length</code> (and at least 4)
+     * @param length    The length of the sequence
+     * @return          The length to which the sequence has to be zero-padded
+     */
+    public static int size(int length){
+        int n = 4;
+        while(n < length) n <<= 1;
+        return n;
+    }
+
+    /**
+     * Get the length of the real sequences transformed
+     * @return  The length of the real sequences
+     */
+    public int size(){
+        return n;
+    }
+
+    /**
+     * Computes the spectrum X[0..n/2] of the real sequence <code>x</code>. The rest of
+     * the spectrum follows from X[n-k] = conj(X[k]).
+     * @param x     The real sequence of length n. It is not modified.
+     * @param re    The array to hold the real parts of the spectrum, of length n/2+1 at least
+     * @param im    The array to hold the imaginary parts of the spectrum, of length n/2+1 at least
+     */
+    public void transform(double[] x, double[] re, double[] im){
+        int j;
+        // Pack x[2k] + i*x[2k+1] in bit-reversed order
+        for(int i=0;i<h;i++){
+            j = reverse[i];
+            re[i] = x[2*j];
+            im[i] = x[2*j+1];
+        }
+        // Radix-2 butterflies of the complex FFT of length h
+        int half, step, t;
+        double wr, wi, vr, vi;
+        for(int len=2;len<=h;len<<=1){
+            half = len >> 1;
+            step = n/len;
+            for(int i=0;i<h;i+=len){
+                for(j=0;j<half;j++){
+                    t = j*step;
+                    wr = cos[t];
+                    wi = -sin[t];
+                    vr = re[i+j+half]*wr - im[i+j+half]*wi;
+                    vi = re[i+j+half]*wi + im[i+j+half]*wr;
+                    re[i+j+half] = re[i+j] - vr;
+                    im[i+j+half] = im[i+j] - vi;
+                    re[i+j] += vr;
+                    im[i+j] += vi;
+                }
+            }
+        }
+        // Split into the spectrum of the real sequence:
+        // X[k] = E[k] + W^k O[k], X[h-k] = conj(E[k] - W^k O[k])
+        double ar, ai, br, bi, er, ei, or, oi, xr, xi;
+        re[h] = re[0] - im[0];
+        im[h] = 0;
+        re[0] = re[0] + im[0];
+        im[0] = 0;
+        for(int k=1;k<=h/2;k++){
+            ar = re[k];
+            ai = im[k];
+            br = re[h-k];
+            bi = im[h-k];
+            er = (ar + br)/2;
+            ei = (ai - bi)/2;
+            or = (ai + bi)/2;
+            oi = (br - ar)/2;
+            xr = cos[k]*or + sin[k]*oi;
+            xi = cos[k]*oi - sin[k]*or;
+            re[k] = er + xr;
+            im[k] = ei + xi;
+            re[h-k] = er - xr;
+            im[h-k] = xi - ei;
+        }
+    }
+}
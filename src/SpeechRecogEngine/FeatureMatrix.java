@@ -0,0 +1,156 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.util.Vector;
+
+/**
+ * A set of feature vectors stored row after row in a single <code>double[]</code>.
+ * Element <code>j</code> of vector <code>i</code> is at <code>i*dimension + j</code>,
+ * so walking the set streams through contiguous memory with no casts or
+ * synchronization. Used for the input vectors and the codebook in VectorQuantizer.
+ * @see VectorQuantizer
+ * @author Krishna Brahmam
+ */
+public class FeatureMatrix {
+
+    private double[] data;      // The feature vectors, row after row
+    private int rows;           // The number of feature vectors
+    private int dimension;      // The size of each feature vector
+
+    /**
+     * Class constructor for an empty FeatureMatrix
+     * @param dimension     The size of each feature vector
+     * @param capacity      The number of feature vectors it can initially hold
+     */
+    public FeatureMatrix(int dimension, int capacity){
+        this.dimension = dimension;
+        this.data = new double[Math.max(capacity, 1)*dimension];
+        this.rows = 0;
+    }
+
+    /**
+     * Class constructor for a FeatureMatrix over the feature vectors in <code>data</code>.
+     * The array is not copied.
+     * @param dimension     The size of each feature vector
+     * @param data          The feature vectors, row after row
+     */
+    public FeatureMatrix(int dimension, double[] data){
+        this.dimension = dimension;
+        this.data = data;
+        this.rows = data.length/dimension;
+    }
+
+    /**
+     * Class constructor for a FeatureMatrix holding a copy of the feature vectors in
+     * <code>vectors</code>
+     * @param vectors       The Vector of feature vectors (<code>double[]</code>)
+     * @param dimension     The size of each feature vector
+     */
+    public FeatureMatrix(Vector vectors, int dimension){
+        this(dimension, vectors.size());
+        for(int i=0;i<vectors.size();i++){
+            addRow((double[]) vectors.elementAt(i));
+        }
+    }
+
+    /**
+     * Appends a feature vector
+     * @param vector    The feature vector. Its first <code>dimension</code> elements are copied.
+     */
+    public void addRow(double[] vector){
+        addRow(vector, 0);
+    }
+
+    /**
+     * Appends a feature vector
+     * @param src       The array holding the feature vector
+     * @param offset    The position of the feature vector in <code>src</code>
+     */
+    public void addRow(double[] src, int offset){
+        if((rows+1)*dimension > data.length){
+            double[] temp = new double[Math.max(rows+1, rows*2)*dimension];
+            System.arraycopy(data, 0, temp, 0, rows*dimension);
+            data = temp;
+        }
+        System.arraycopy(src, offset, data, rows*dimension, dimension);
+        rows++;
+    }
+
+    /**
+     * Get the number of feature vectors
+     * @return  The number of feature vectors
+     */
+    public int rows(){
+        return rows;
+    }
+
+    /**
+     * Get the size of each feature vector
+     * @return  The size of each feature vector
+     */
+    public int dimension(){
+        return dimension;
+    }
+
+    /**
+     * Get the storage of the matrix. Row <code>i</code> starts at <code>i*dimension()</code>.
+     * The array is not copied, so changes made to it are seen by the matrix.
+     * @return  The feature vectors, row after row
+     */
+    public double[] data(){
+        return data;
+    }
+
+    /**
+     * Get element <code>col</code> of feature vector <code>row</code>
+     * @param row   The index of the feature vector
+     * @param col   The index of the element
+     * @return      The value of the element
+     */
+    public double get(int row, int col){
+        return data[row*dimension + col];
+    }
+
+    /**
+     * Get a copy of feature vector <code>row</code>
+     * @param row   The index of the feature vector
+     * @return      A copy of the feature vector
+     */
+    public double[] getRow(int row){
+        double[] temp = new double[dimension];
+        System.arraycopy(data, row*dimension, temp, 0, dimension);
+        return temp;
+    }
+
+    /**
+     * Replaces feature vector <code>row</code>
+     * @param row       The index of the feature vector
+     * @param vector    The new feature vector
+     */
+    public void setRow(int row, double[] vector){
+        System.arraycopy(vector, 0, data, row*dimension, dimension);
+    }
+
+    /**
+     * Removes all the feature vectors
+     */
+    public void clear(){
+        rows = 0;
+    }
+
+    /**
+     * Get the feature vectors as a Vector of <code>double[]</code>, the form in which
+     * codebooks are serialized.
+     * @return  A Vector holding a copy of each feature vector
+     */
+    public Vector toVector(){
+        Vector v = new Vector(rows);
+        for(int i=0;i<rows;i++){
+            v.addElement(getRow(i));
+        }
+        return v;
+    }
+}
@@ -0,0 +1,86 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Extracts the feature vectors of a speech sample stored in WAV format. The sample
+ * values obtained by Wav2TextConverter are handed directly to LPCAnalyzer so that
+ * no intermediate files are written. For debugging, the sample values and the
+ * cepstral coefficients can still be recorded in text files.
+ * @see Wav2TextConverter
+ * @see LPCAnalyzer
+ * @author Krishna Brahmam
+ */
+public class FeaturePipeline {
+
+    private int order;              // The order in LPC
+    private int frameLength;        // The length of a frame
+    private int frameShift;         // The shift between successive frames
+
+    private ForkJoinPool pool;      // The pool to analyze the frames in. null for serial analysis
+    private String samplesFile;     // The file to record the sample values in (debug)
+    private String cepstrumFile;    // The file to record the cepstral coefficients in (debug)
+
+    /**
+     * Class constructor for FeaturePipeline
+     * @param order         The order in LPC
+     * @param frameLength   The length of a frame
+     * @param frameShift    The shift between successive frames
+     */
+    public FeaturePipeline(int order, int frameLength, int frameShift){
+        this.order = order;
+        this.frameLength = frameLength;
+        this.frameShift = frameShift;
+    }
+
+    /**
+     * Analyzes the frames of each speech sample in parallel, on the common ForkJoinPool.
+     * The feature vectors are the same as those of the serial analysis.
+     * @param parallel  If <code>true</code>, the frames are analyzed in parallel
+     * @see LPCAnalyzer#analyzeParallel(double[], ForkJoinPool)
+     */
+    public void setParallel(boolean parallel){
+        this.pool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    /**
+     * Records the sample values and the cepstral coefficients of every speech sample
+     * processed in the files <code>samplesFile</code> and <code>cepstrumFile</code>.
+     * This is used for debugging.
+     * @param samplesFile   The file to record the sample values in. <code>null</code>
+     *                      to turn off the recording.
+     * @param cepstrumFile  The file to record the cepstral coefficients in
+     */
+    public void setDebug(String samplesFile, String cepstrumFile){
+        this.samplesFile = samplesFile;
+        this.cepstrumFile = cepstrumFile;
+    }
+
+    /**
+     * Extracts the feature vectors of the speech sample <code>filename</code>
+     * @param filename      The name of the WAV file
+     * @return              The cepstral coefficients of each frame
+     * @throws java.io.IOException
+     */
+    public double[][] extract(String filename) throws IOException{
+        Wav2TextConverter wv;
+        LPCAnalyzer lpc;
+        if(samplesFile != null){
+            wv = new Wav2TextConverter(filename, samplesFile);
+            lpc = new LPCAnalyzer(order, frameShift, frameLength, cepstrumFile);
+        }
+        else{
+            wv = new Wav2TextConverter(filename);
+            lpc = new LPCAnalyzer(order, frameShift, frameLength);
+        }
+        if(pool != null){
+            return lpc.analyzeParallel(wv.getSamples(), pool);
+        }
+        return lpc.analyze(wv.getSamples());
+    }
+}
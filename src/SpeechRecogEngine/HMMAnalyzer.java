@@ -14,21 +14,23 @@ import java.util.Vector;
 
 /**
  * Builds the Hidden Markov Models using the Forward Procedure, Backward Procedure,
- * Viterbi algorithm and Expectation Modification.
+ * Viterbi algorithm and Expectation Modification. For a banded model only the 
+ * transitions within the band are visited, so each time step takes O(N*band) 
+ * rather than O(N*N).
+ * @see Model#getBand()
  * @author Krishna Brahmam
  */
 public class HMMAnalyzer {
     
     private final boolean DEBUG = false;
     
-    private double[][] alpha;           
-    private double[][] beta;
+    private double[][] alpha;           // The scaled forward variables
+    private double[][] beta;            // The scaled backward variables
+    private double[] scale;             // The scaling coefficient of each time step
     private double[][] gamma;
     private double[][][] xi;
-    private int[] stateSequence;
     private int min_T;
     private int N;
-    private int qStar;
     private BufferedWriter bfwHMM;
     private boolean mode;
     
@@ -50,47 +52,80 @@ public class HMMAnalyzer {
     }
     
     /**
-     * Performs the Forward Procedure
+     * Performs the Forward Procedure. The probability underflows to 0 for long observation
+     * sequences, so <code>logForwardProcedure()</code> should be used to compare models.
      * @param lambda    The Hidden Markov Model for which the forward procedure is to be carried out
      * @param obs       The observation sequence
      * @return          The probability of the observation sequence given the model
      */
     public double forwardProcedure(Model lambda, int[] obs){
+        return Math.exp(logForwardProcedure(lambda, obs));
+    }
+    
+    /**
+     * Performs the Forward Procedure with scaling. The forward variables of each time 
+     * step t are multiplied by the scaling coefficient c[t] = 1/sum(alpha[t][i]), so that
+     * they add up to 1 and do not underflow however long the observation sequence is.
+     * The probability of the observation sequence is then 1/(c[0]c[1]...c[T-1]).
+     * @param lambda    The Hidden Markov Model for which the forward procedure is to be carried out
+     * @param obs       The observation sequence
+     * @return          The logarithm of the probability of the observation sequence given 
+     *                  the model. <code>Double.NEGATIVE_INFINITY</code> if the observation 
+     *                  sequence is impossible.
+     */
+    public double logForwardProcedure(Model lambda, int[] obs){
         if(obs.length < min_T){
             System.err.println("Observation sequence incomplete");
-            return 0;
+            return Double.NEGATIVE_INFINITY;
         }
-        alpha = new double[obs.length][N];
+        int T = obs.length;
+        alpha = new double[T][N];
+        scale = new double[T];
         if(DEBUG) System.out.println("Carrying out forward procedure");
         if(lambda == null){
             System.err.println("Model is NULL");
             System.exit(-1);
         }
         double sum;
+        double logProbability = 0;
         // Initialization
+        sum = 0;
         for(int i=0;i<N;i++){
             alpha[0][i] = lambda.pi(i)* lambda.b(i, obs[0]);
+            sum += alpha[0][i];
         }
-        // Induction
-        for(int t=0;t<obs.length-1;t++){
+        for(int t=0;;t++){
+            // Scaling
+            if(sum == 0){
+                return Double.NEGATIVE_INFINITY;
+            }
+            scale[t] = 1/sum;
+            for(int i=0;i<N;i++){
+                alpha[t][i] *= scale[t];
+            }
+            logProbability += Math.log(sum);
+            if(t == T-1){
+                break;
+            }
+            // Induction
+            double total = 0;
             for(int j=0;j<N;j++){
                 sum = 0;
-                for(int i=0;i<N;i++){
+                for(int i=lambda.firstPredecessor(j);i<=lambda.lastPredecessor(j);i++){
                     sum += alpha[t][i] * lambda.a(i, j);
                 }
                 alpha[t+1][j] = sum * lambda.b(j, obs[t+1]);
+                total += alpha[t+1][j];
             }
+            sum = total;
         }
         // Termination
-        sum = 0;
-        for(int i=0;i<N;i++){
-            sum += alpha[obs.length-1][i];
-        }
-        return sum;
+        return logProbability;
     }
     
     /**
-     * Performs the Backward Procedure
+     * Performs the Backward Procedure, scaled with the coefficients found by the 
+     * forward procedure, which must have been carried out first.
      * @param lambda       The Hidden Markov Model for which the backward procedure is to be carried out
      * @param obs          The observation sequence
      */
@@ -104,103 +139,88 @@ public class HMMAnalyzer {
         double sum;
         // Initialization
         for(int i=0;i<N;i++){
-            beta[obs.length-1][i] = 1;
+            beta[obs.length-1][i] = scale[obs.length-1];
         }
         // Induction
         for(int t=obs.length-1;t>0;t--){
             for(int i=0;i<N;i++){
                 sum = 0;
-                for(int j=0;j<N;j++){
+                for(int j=lambda.firstSuccessor(i);j<=lambda.lastSuccessor(i);j++){
                      sum += (lambda.a(i, j) * lambda.b(j, obs[t]) * beta[t][j]);
                 }
-                beta[t-1][i] = sum;
+                beta[t-1][i] = sum * scale[t-1];
             }
         }
     }
     
     /**
-     * Performs the Viterbi search algorithm
+     * Performs the Viterbi search algorithm. The probability underflows to 0 for long 
+     * observation sequences, so <code>logViterbiAlgorithm()</code> should be used to 
+     * compare models.
      * @param lambda       The Hidden Markov Model for which the Viterbi algorithm is to be carried out
      * @param obs          The observation sequence
      * @return             The probability of the optimal state sequence given the model 
      *                     and the observation sequence
      */
     public double runViterbiAlgorithm(Model lambda, int[] obs){
-        int[][] psi = new int[obs.length][N];
-        double[][] delta = new double[obs.length][N];
-        
+        return Math.exp(logViterbiAlgorithm(lambda, obs));
+    }
+    
+    /**
+     * Performs the Viterbi search algorithm on the logarithms of the probabilities, 
+     * so that the products become sums and do not underflow.
+     * @param lambda       The Hidden Markov Model for which the Viterbi algorithm is to be carried out
+     * @param obs          The observation sequence
+     * @return             The logarithm of the probability of the optimal state sequence 
+     *                     given the model and the observation sequence
+     * @see CompiledModel
+     */
+    public double logViterbiAlgorithm(Model lambda, int[] obs){
         if(obs.length < min_T){
             System.err.println("Observation sequence incomplete");
-            return 0;
+            return Double.NEGATIVE_INFINITY;
         }
         if(DEBUG) System.out.println("Carrying out Viterbi's Algorithm");
-        double pStar;
-        // Initialization
-        for(int i=0;i<N;i++){
-            delta[0][i] = lambda.pi(i) * lambda.b(i, obs[0]);
-            psi[0][i] = 0;
-        }
-        
-        // Recursion
-        double max;
-        double temp;
-        for(int t=1;t<obs.length;t++){
-            for(int j=0;j<N;j++){
-                psi[t][j] = 0;
-                max = delta[t-1][0] * lambda.a(0, j);
-                for(int i=1;i<N;i++){
-                    temp = delta[t-1][i] * lambda.a(i, j);
-                    if(temp > max){
-                        max = temp;
-                        psi[t][j] = i;
-                    }
-                }
-                delta[t][j] = max * lambda.b(j, obs[t]);
-            }
-        }
-        
-        // Termination
-        pStar = delta[obs.length-1][0];
-        qStar = 0;
-        for(int i=1;i<N;i++){
-            if(delta[obs.length-1][i] > pStar){
-                pStar = delta[obs.length-1][i];
-                qStar = i;
-            }
-        }
-        
+        CompiledModel viterbi = new CompiledModel(lambda);
         if(DEBUG){
+            int[] stateSequence = new int[obs.length];
+            double pStar = viterbi.logViterbi(obs, stateSequence);
             System.out.println("Prob: "+pStar);
-            printOptimalStateSequence(obs.length,psi);
+            printOptimalStateSequence(stateSequence);
+            return pStar;
         }
-        return pStar;
+        return viterbi.logViterbi(obs);
     }
     
     /**
-     * Performs the expectation modification procedure
+     * Performs the expectation modification procedure on the scaled forward and backward
+     * variables, which must have been computed first. With scaling, 
+     * gamma[t][i] = alpha[t][i]beta[t][i]/c[t] and 
+     * xi[i][j][t] = alpha[t][i]a(i,j)b(j,obs[t+1])beta[t+1][j]; the probability of the
+     * observation sequence cancels out. xi is 0 outside the band of the model, so the
+     * re-estimated model has the same band.
      * @param lambda                    The model for which the expectation modification process has to be carried
      * @param obs                       The observation sequence
-     * @param probabilityOfObservation  The probability of observation sequence of the new model
      * @return                          The new re-estimated model
      */
-    private Model expectationModification(Model lambda, int[] obs, double probabilityOfObservation){
+    private Model expectationModification(Model lambda, int[] obs){
         gamma = new double[obs.length][N];
         xi = new double[N][N][obs.length-1];
         if(DEBUG) System.out.println("running EM method");
         Model m = new Model(N,lambda.getNumberOfObservations());
+        m.setBand(lambda.getBand());
         // Calculating xi
         for(int t=0;t<obs.length-1;t++){
             for(int i=0;i<N;i++){
-                for(int j=0;j<N;j++){
+                for(int j=lambda.firstSuccessor(i);j<=lambda.lastSuccessor(i);j++){
                     xi[i][j][t] = alpha[t][i] * lambda.a(i, j) * lambda.b(j, obs[t+1]) * beta[t+1][j];
-                    xi[i][j][t] = xi[i][j][t] / probabilityOfObservation;
                 }
             }
         }
         // Calculate gamma
         for(int t=0;t<obs.length;t++){
             for(int i=0;i<N;i++){
-                gamma[t][i] = (alpha[t][i] * beta[t][i])/probabilityOfObservation;
+                gamma[t][i] = (alpha[t][i] * beta[t][i])/scale[t];
             }
         }
         // Re-estimate pi (may not be required)
@@ -211,7 +231,7 @@ public class HMMAnalyzer {
         // Re-estimate A
         if(DEBUG) System.out.println("Re-estimating A");
         for(int i=0, j=0;i<lambda.getNumberOfStates();i++){
-            for(j=0;j<lambda.getNumberOfStates();j++){
+            for(j=m.firstSuccessor(i);j<=m.lastSuccessor(i);j++){
                 m.setA(i, j, expectedTransitions(i,j, obs.length)/expectedTransitions(i,obs.length));
             }
             if(i==j) System.out.println(expectedTransitions(i,j, obs.length)/expectedTransitions(i,obs.length));
@@ -334,32 +354,15 @@ public class HMMAnalyzer {
     
     /**
      * Prints the optimal state sequence
-     * @param T     The number of observations
-     * @param psi   The array for backtracking found during Viterbi algorithm
+     * @param stateSequence     The optimal state sequence found by the Viterbi algorithm
      */
-    public void printOptimalStateSequence(int T, int[][] psi){
-        stateSequence = new int[T];
-        backTrack(stateSequence, psi, T);
+    public void printOptimalStateSequence(int[] stateSequence){
         for(int i=0;i<stateSequence.length;i++){
             System.out.print(stateSequence[i]+" ");
         }
         System.out.println();
     }
     
-    /**
-     * Backtracks to find the optimal state sequence using the 'psi' array determined during 
-     * the Viterbi algorithm.
-     * @param stateSequence     The array which records the optimal state sequence 
-     * @param psi               The array used for backtracking. Filled during Viterbi algorithm
-     * @param T                 The number of observations
-     */
-    private void backTrack(int[] stateSequence, int[][] psi, int T){
-        stateSequence[T-1] = qStar;
-        for(int t=T-2;t>=0;t--){
-            stateSequence[t] = psi[t+1][stateSequence[t+1]];
-        }
-    }
-    
     /**
      * Starts the HMM building process: Forward Procedure, Backward Procedure, Viterbi algorithm,
      * Re-estimation using Expectation Modification.
@@ -368,8 +371,8 @@ public class HMMAnalyzer {
      * @return          The 'best' model giving the highest probability of optimal state sequence
      */
     private Model analyze(Model lambda, int[] obs){
-        double pStar = 0, pStar1 = -1;
-        double probabilityOfObservation = 0;
+        // The logarithms of the probabilities of the optimal state sequences
+        double pStar = Double.NEGATIVE_INFINITY, pStar1 = Double.NEGATIVE_INFINITY;
         Model m = lambda;
         Model m1;
         int iterations = 0;
@@ -378,22 +381,25 @@ public class HMMAnalyzer {
                 System.out.println("*************** Iteration "+iterations+" ******************");
             }
             else{
-                System.out.println("Iteration: "+iterations+" Probability: "+pStar);
+                System.out.println("Iteration: "+iterations+" Log probability: "+pStar);
             }
             m1 = m;
-            probabilityOfObservation = forwardProcedure(m1,obs);
+            if(logForwardProcedure(m1,obs) == Double.NEGATIVE_INFINITY){
+                // The observation sequence is impossible under the model
+                break;
+            }
             backwardProcedure(m1,obs);
-            if(pStar1 == 0) pStar = runViterbiAlgorithm(m1,obs);
-            else pStar = pStar1;
-            m = expectationModification(m1,obs, probabilityOfObservation);
-            pStar1 = runViterbiAlgorithm(m,obs);
+            pStar = pStar1;
+            m = expectationModification(m1,obs);
+            pStar1 = logViterbiAlgorithm(m,obs);
             iterations++;
         }while( pStar1 > pStar && iterations < 500000);
         return m1;
     }
     
     /**
-     * Carries out the averaging of all the models
+     * Carries out the averaging of all the models. The band of the averaged model 
+     * covers the bands of all the models.
      * @param models    The models  
      * @param M         The number of observation symbols per state
      * @return          The averaged model
@@ -404,6 +410,15 @@ public class HMMAnalyzer {
         Model model = new Model(N,M);
         double sum;
         double num = models.size();
+        int band = 0;
+        for(int m=0;m<models.size();m++){
+            if(((Model) models.elementAt(m)).getBand() == 0){
+                band = 0;
+                break;
+            }
+            band = Math.max(band, ((Model) models.elementAt(m)).getBand());
+        }
+        model.setBand(band);
         for(int i=0;i<N;i++){
             // Average of PI
             sum = 0;
@@ -412,7 +427,7 @@ public class HMMAnalyzer {
             }
             model.setPi(i, sum / num);
             // Average of A
-            for(int j=0;j<N;j++){
+            for(int j=model.firstSuccessor(i);j<=model.lastSuccessor(i);j++){
                 sum = 0;
                 for(int m=0;m<models.size();m++){
                     sum += ((Model) models.elementAt(m)).a(i, j);
@@ -13,6 +13,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.Scanner;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -21,8 +23,31 @@ import java.util.Vector;
  * @author Krishna Brahmam
  */
 public class HMMRecognizer {
-    private Vector codebook;        // The VQ codebook
+    
+    /**
+     * The ways an observation sequence can be scored against a model
+     */
+    public enum Scoring {
+        /** The probability of the observation sequence, by the scaled forward procedure */
+        FORWARD,
+        /** The probability of the optimal state sequence, by the log-domain Viterbi algorithm */
+        VITERBI
+    }
+    
+    private static final int BLOCK = 8;     // The number of models scored by one task
+    
+    private FeatureMatrix codebook; // The VQ codebook
     private Vector models;          // The saved models
+    private Vector compiled;        // The CompiledModel of each saved model
+    private Scoring scoring = Scoring.FORWARD;
+    private boolean parallel = true;
+    private int scratchSize;        // The largest scratch array needed by a model
+    private ThreadLocal<double[]> scratch = new ThreadLocal<double[]>();
+    private double beam = Double.POSITIVE_INFINITY;    // The beam of the beam search
+    private CompiledModel[] beamModels; // The compiled models, for the beam search
+    private double[][] rows;        // The DP rows of each model in the beam search
+    private int pruned;             // The number of models pruned in the last recognition
+    private int impossible;         // The number of models dropped as impossible in it
     
     private Vector tempModels;
     private Vector tempModelNames;
@@ -50,33 +75,80 @@ public class HMMRecognizer {
         this.output = output;
         
         this.models = new Vector();
+        this.compiled = new Vector();
         this.tempModels = new Vector();
         this.tempModelNames = new Vector();
     }
 
     /**
-     * Reads the binary codebook saved during vector quantization in VectorQuantizer
+     * Reads the binary codebook saved during vector quantization in VectorQuantizer,
+     * in either format read by CodeBookFile
      * @param file      The name of the file containing the codebook
      * @see VectorQuantizer
+     * @see CodeBookFile
      */
     private void loadCodeBook(String file){
-        ObjectInputStream inputStream = null;
         try {
-            inputStream = new ObjectInputStream(new FileInputStream(file));
-            codebook = (Vector) inputStream.readObject();
-        } catch (Exception ex) {
+            codebook = CodeBookFile.read(file).getCodeBook();
+        } catch (IOException ex) {
             ex.printStackTrace();
-        } finally {
-            try {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
         }
     }
     
+    /**
+     * Sets the way the observation sequences are scored against each model. By default
+     * the forward procedure is used.
+     * @param scoring   The way the observation sequences are scored
+     */
+    public void setScoring(Scoring scoring){
+        this.scoring = scoring;
+    }
+    
+    /**
+     * Scores the models in parallel. By default the models are scored in blocks of
+     * <code>BLOCK</code> on the common ForkJoinPool; the result is the same either way.
+     * @param parallel  If <code>true</code>, the models are scored in parallel
+     */
+    public void setParallel(boolean parallel){
+        this.parallel = parallel;
+    }
+    
+    /**
+     * Sets the beam of the beam search. The models are then scored together on one 
+     * thread, one time step after another, and a model whose score falls more than 
+     * <code>beam</code> below the best score at a time step is not scored any further. 
+     * A narrower beam is faster on large vocabularies, but may prune the model that 
+     * would have won.
+     * By default the beam is infinite and every model is scored in full.
+     * @param beam      The beam, in natural logarithm units. 
+     *                  <code>Double.POSITIVE_INFINITY</code> to turn off the beam search.
+     * @throws IllegalArgumentException     if <code>beam</code> is negative or NaN
+     */
+    public void setBeam(double beam){
+        if(!(beam >= 0)){
+            throw new IllegalArgumentException("Incorrect beam "+beam);
+        }
+        this.beam = beam;
+    }
+    
+    /**
+     * Get the number of models pruned by the beam search in the last recognition
+     * @return  The number of models pruned, 0 if the beam search is off
+     */
+    public int getPrunedModels(){
+        return pruned;
+    }
+    
+    /**
+     * Get the number of models dropped by the beam search in the last recognition 
+     * because the observation sequence is impossible given them. These are not 
+     * counted by <code>getPrunedModels()</code>.
+     * @return  The number of models dropped as impossible, 0 if the beam search is off
+     */
+    public int getImpossibleModels(){
+        return impossible;
+    }
+    
     /**
      * Reads the binary models saved in HMMAnalyzer. The method calls loadModel()
      * for each model name listed in the <code>index</code> file.
@@ -161,7 +233,7 @@ public class HMMRecognizer {
             for(int i=0;i<tempModels.size();i++){
                 m = (Model) tempModels.elementAt(i);
                 modelName = (String) tempModelNames.elementAt(i);
-                bfw.write(modelName + "\t" + hmm.forwardProcedure(m, obs));
+                bfw.write(modelName + "\t" + hmm.logForwardProcedure(m, obs));
                 bfw.newLine();
                 
             }
@@ -173,38 +245,168 @@ public class HMMRecognizer {
     }
     
     
+    /**
+     * Scores the observation sequence against a model, using the scratch array of the
+     * current thread
+     * @param i         The index of the model
+     * @param obs       The observation sequence
+     * @return          The logarithm of the probability of the observation sequence, or 
+     *                  of its optimal state sequence, given the model
+     */
+    private double score(int i, int[] obs){
+        CompiledModel m = (CompiledModel) compiled.elementAt(i);
+        double[] s = scratch.get();
+        if(s == null || s.length < scratchSize){
+            s = new double[scratchSize];
+            scratch.set(s);
+        }
+        if(scoring == Scoring.VITERBI){
+            return m.logViterbi(obs, s);
+        }
+        return m.logForward(obs, s);
+    }
+    
+    /**
+     * Scores the observation sequence against a block of models
+     * @param b         The index of the block
+     * @param obs       The observation sequence
+     * @param scores    The array that is to contain the score of each model
+     */
+    private void scoreBlock(int b, int[] obs, double[] scores){
+        int end = Math.min((b+1)*BLOCK, scores.length);
+        for(int i=b*BLOCK;i<end;i++){
+            scores[i] = score(i, obs);
+        }
+    }
+    
+    /**
+     * Scores the observation sequence against all the models together, one time step 
+     * after another, in the way set by <code>setScoring()</code>. At each time step a 
+     * model is pruned if its score so far is more than <code>beam</code> below the best
+     * score of the models, and its score is then taken to be 
+     * <code>Double.NEGATIVE_INFINITY</code>. A model whose score so far is already
+     * <code>Double.NEGATIVE_INFINITY</code> is dropped as impossible, which is counted
+     * apart from the pruning by the beam. The scores of the models that are not 
+     * dropped are the same as without the beam.
+     * @param obs       The observation sequence
+     * @param scores    The array that is to contain the score of each model
+     * @throws IllegalArgumentException     if an observation symbol is not of a model
+     */
+    private void beamSearch(int[] obs, double[] scores){
+        int n = scores.length;
+        if(rows == null || rows.length != n){
+            beamModels = new CompiledModel[n];
+            rows = new double[n][];
+            for(int i=0;i<n;i++){
+                beamModels[i] = (CompiledModel) compiled.elementAt(i);
+                rows[i] = new double[beamModels[i].getScratchSize()];
+            }
+        }
+        // The steps do not check the observation symbols
+        for(int i=0;i<n;i++){
+            beamModels[i].check(obs);
+        }
+        int[] active = new int[n];      // The models not pruned
+        int count = n;
+        for(int i=0;i<n;i++){
+            active[i] = i;
+            scores[i] = obs.length == 0 ? Double.NEGATIVE_INFINITY : 0;
+        }
+        pruned = 0;
+        impossible = 0;
+        double best;
+        int i, kept;
+        for(int t=0;t<obs.length;t++){
+            best = Double.NEGATIVE_INFINITY;
+            for(int a=0;a<count;a++){
+                i = active[a];
+                if(scoring == Scoring.VITERBI){
+                    scores[i] = beamModels[i].viterbiStep(obs, t, rows[i]);
+                }
+                else{
+                    scores[i] += beamModels[i].forwardStep(obs, t, rows[i]);
+                }
+                if(scores[i] > best){
+                    best = scores[i];
+                }
+            }
+            // Prune the models that have fallen out of the beam
+            kept = 0;
+            for(int a=0;a<count;a++){
+                i = active[a];
+                if(scores[i] == Double.NEGATIVE_INFINITY){
+                    impossible++;
+                }
+                else if(scores[i] < best - beam){
+                    scores[i] = Double.NEGATIVE_INFINITY;
+                    pruned++;
+                }
+                else{
+                    active[kept++] = i;
+                }
+            }
+            count = kept;
+        }
+    }
+    
     /**
      * Carries out the recognition by loading the codebook and models. The probability 
      * of the observation sequence given each model is found and the one with the highest 
-     * probability is selected from the <code>output</code> array of Strings.
+     * probability is selected from the <code>output</code> array of Strings. The 
+     * logarithms of the probabilities are compared, as the probabilities themselves 
+     * underflow for long observation sequences. The probabilities are found by the
+     * forward procedure, or by the Viterbi algorithm as set by <code>setScoring()</code>.
+     * The models are scored in parallel if enabled, and the highest probability is then
+     * searched for in model order, so that a tie goes to the first of the models.
+     * If a beam is set, the models are instead scored by the beam search.
      * @param obs       The observation sequence
+     * @return          The index of the recognized output, or -1 if it cannot be recognized
      */
-    public void recognize(int[] obs){
-        Model m;
-        double max = 0;
+    public int recognize(int[] obs){
+        double max = Double.NEGATIVE_INFINITY;
         int max_index = -1;
-        double prob;
         hmm = new HMMAnalyzer(obs.length,N, false);
         
         if(codebook == null){
             System.err.println("Loading codebook");
             loadCodeBook(cb);
         }
-        if(models.isEmpty() || tempModels.isEmpty()){
+        if(models.isEmpty()){
             System.err.println("Loading models");
             loadModels(index, models);
             //loadTempModels("HMMList", tempModels);
+            // Compile each model once for all the observation sequences
+            compiled.clear();
+            for(int i=0;i<models.size();i++){
+                compiled.addElement(new CompiledModel((Model) models.elementAt(i)));
+                scratchSize = Math.max(scratchSize, ((CompiledModel) compiled.lastElement()).getScratchSize());
+            }
         }
         
         record(hmm, obs);
         
         // Calculate the probabilities of the observation sequence given each model
-        for(int i=0;i<models.size();i++){
-            m = (Model) models.elementAt(i);
-            prob = hmm.forwardProcedure(m, obs);
-            //System.out.println(prob);
-            if(max < prob){
-                max = prob;
+        double[] scores = new double[compiled.size()];
+        int blocks = (scores.length + BLOCK - 1)/BLOCK;
+        pruned = 0;
+        impossible = 0;
+        if(beam != Double.POSITIVE_INFINITY){
+            beamSearch(obs, scores);
+            System.err.println("Pruned "+pruned+" of "+scores.length+" models, "
+                    +impossible+" impossible");
+        }
+        else if(parallel && blocks > 1){
+            ForkJoinPool.commonPool().invoke(new ScoreTask(0, blocks, obs, scores));
+        }
+        else{
+            for(int b=0;b<blocks;b++){
+                scoreBlock(b, obs, scores);
+            }
+        }
+        for(int i=0;i<scores.length;i++){
+            //System.out.println(scores[i]);
+            if(max < scores[i]){
+                max = scores[i];
                 max_index = i;
             }
         }
@@ -213,5 +415,36 @@ public class HMMRecognizer {
         else{
             System.out.println("Sorry, cannot recognize.");
         }
+        return max_index;
+    }
+    
+    /**
+     * Scores a range of blocks of models, splitting it in halves until a single 
+     * block remains.
+     */
+    private class ScoreTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;           // The first block of the range
+        private int to;             // The block after the last one of the range
+        private int[] obs;          // The observation sequence
+        private double[] scores;    // The score of each model
+
+        ScoreTask(int from, int to, int[] obs, double[] scores){
+            this.from = from;
+            this.to = to;
+            this.obs = obs;
+            this.scores = scores;
+        }
+
+        protected void compute(){
+            if(to - from == 1){
+                scoreBlock(from, obs, scores);
+            }
+            else{
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScoreTask(from, mid, obs, scores), new ScoreTask(mid, to, obs, scores));
+            }
+        }
     }
 }
\ No newline at end of file
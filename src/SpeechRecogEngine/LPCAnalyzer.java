@@ -11,30 +11,54 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.StringTokenizer;
-import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Extracts the Linear Predictive Cepstral Coefficients by taking the input file 
- * of sample values extracted by Wav2TextConverter.
+ * of sample values extracted by Wav2TextConverter, or the sample values themselves
+ * through <code>analyze()</code>. Sample values can also be pushed block by block 
+ * through <code>push()</code>, in which case the cepstral coefficients of each frame
+ * are handed to a CepstrumListener as soon as the frame is complete.
  * @see Wav2TextConverter
+ * @see CepstrumListener
  * @author Krishna Brahmam
  */ 
 public class LPCAnalyzer {
     
+    private static final double FFT_COST = 3;    // Cost of the FFT path per L log L, in multiply-adds
+    private static final int MIN_PARALLEL_FRAMES = 256;  // Fewer frames than this are analyzed serially
+    // The working arrays of each worker thread of analyzeParallel(), kept between calls
+    private static final ThreadLocal<LPCAnalyzer> workers = new ThreadLocal<LPCAnalyzer>();
+    
     private int p;
-    private double[] e;         
-    private double[][] alpha;
     private double[] r;         // Auto-correlation values
-    private double[] k;         // PARCOR coefficients
     private double[] c;         // Cepstral coefficients
-    private Vector s;
-    private Vector in;
+    private SampleBuffer s;     // The sample values read by start(). Allocated when first used
+    private SampleBuffer in;    // The sample values of a word. Allocated when first used
+    private double[] samples;   // The sample values under analysis
     
     private double[] x;
+    private double[] window;    // The coefficients of the window applied to a frame
+    
+    private boolean fft;        // If true, the auto-correlation is computed through the FFT
+    private FFT transform;      // The FFT of the zero-padded frame
+    private double[] padded;    // The zero-padded frame, then the symmetric power spectrum
+    private double[] re;        // Real part of the spectrum
+    private double[] im;        // Imaginary part of the spectrum
+    private double[] power;     // The power spectrum of the frame
+    private boolean powerValid; // Whether <code>power</code> holds the spectrum of the current frame
     private double[] lpc;       // LP coefficients
     private int N;              // The length of a frame
     private int M;              // The shift or interval between successive frames 
     
+    private double[] ring;      // The last N sample values pushed
+    private int ringPosition;   // The position of the oldest sample value in the ring
+    private long pushed;        // The number of sample values pushed
+    private long frameEnd;      // The number of sample values needed to complete the next frame
+    private long frame;         // The number of the next frame
+    private CepstrumListener listener;
+    
     private BufferedWriter bfwr;
     
     /**
@@ -51,24 +75,69 @@ public class LPCAnalyzer {
         this.N = N;     // frame length
         
         // Variable used in Durbin's algorithm
-        e = new double[p+1];
-        alpha = new double[p+1][p+1];
         r = new double[p+1];
-        k = new double[p+1];
         c = new double[p+1];
-        s = new Vector();
-        in = new Vector();
         
         x = new double[N];
+        window = WindowFunction.HAMMING.coefficients(N);
         lpc = new double[p];
+        fft = preferFFT(p, N);
         
-        try {
-            bfwr = new BufferedWriter(new FileWriter(output));
-        } catch (IOException ex) {
-            System.out.println(ex.getMessage());
+        if(output != null){
+            try {
+                bfwr = new BufferedWriter(new FileWriter(output));
+            } catch (IOException ex) {
+                System.out.println(ex.getMessage());
+            }
         }
     }
     
+    /**
+     * Class constructor for LPCAnalyzer which does not record the cepstral 
+     * coefficients to a file. The coefficients are returned by <code>analyze()</code>.
+     * @param p         The oreder in LPC
+     * @param M         The shift between successive frames
+     * @param N         The length of a frame
+     */
+    public LPCAnalyzer(int p, int M, int N){
+        this(p, M, N, null);
+    }
+    
+    /**
+     * Class constructor for an LPCAnalyzer holding only the working arrays of a frame,
+     * for a worker thread of <code>analyzeParallel()</code>. The FFT arrays are
+     * allocated when first used, and the settings are copied by <code>worker()</code>.
+     * @param analyzer  The analyzer to take the order and frame length from
+     */
+    private LPCAnalyzer(LPCAnalyzer analyzer){
+        this.p = analyzer.p;
+        this.M = analyzer.M;
+        this.N = analyzer.N;
+        r = new double[p+1];
+        c = new double[p+1];
+        x = new double[N];
+        lpc = new double[p];
+    }
+    
+    /**
+     * Get the working arrays of the current thread for <code>analyzeParallel()</code>,
+     * set to analyze the same sample values in the same way as this analyzer. They are
+     * kept for the next call unless the order or the frame length changes.
+     * @return  The analyzer holding the working arrays of the current thread
+     */
+    private LPCAnalyzer worker(){
+        LPCAnalyzer worker = workers.get();
+        if(worker == null || worker.p != p || worker.N != N){
+            worker = new LPCAnalyzer(this);
+            workers.set(worker);
+        }
+        worker.M = M;
+        worker.window = window;
+        worker.fft = fft;
+        worker.samples = samples;
+        return worker;
+    }
+    
     /**
      * Starts the linear predictive analysis by reading the sample values from 
      * <code>input</code>, normalizing it and processing it for the maximum 
@@ -79,62 +148,289 @@ public class LPCAnalyzer {
     public void start(String input) throws IOException{
         readSamples(input);
         //processSamples();
-        process(((s.size()-N)/M)+1);
+        samples = s.array();
+        process(((s.size()-N)/M)+1, null);
+        samples = null;
         bfwr.close();
     }
     
+    /**
+     * Performs the linear predictive analysis on the sample values <code>samples</code>
+     * for the maximum no. of frames available. If an output file was given, the
+     * cepstral coefficients are also recorded in it.
+     * @param samples   The normalized sample values of the speech signal
+     * @return          The cepstral coefficients c[1..p] of each frame
+     */
+    public double[][] analyze(double[] samples){
+        int frames = (samples.length < N) ? 0 : ((samples.length-N)/M)+1;
+        double[][] out = new double[frames][p];
+        this.samples = samples;
+        process(frames, out);
+        this.samples = null;
+        if(bfwr != null){
+            try {
+                bfwr.close();
+            } catch (IOException ex) {
+                System.err.println(ex.getMessage());
+            }
+        }
+        return out;
+    }
+    
+    /**
+     * Performs the linear predictive analysis on the sample values <code>samples</code>
+     * like <code>analyze()</code>, splitting the frames across the workers of 
+     * <code>pool</code>. The frames are independent, so each worker analyzes a range
+     * of frames with its own working arrays and records the cepstral coefficients 
+     * in its rows of the result. Short inputs, and analyzers writing to an output 
+     * file, are analyzed serially.
+     * @param samples   The normalized sample values of the speech signal
+     * @param pool      The pool of workers
+     * @return          The cepstral coefficients c[1..p] of each frame
+     */
+    public double[][] analyzeParallel(double[] samples, ForkJoinPool pool){
+        int frames = (samples.length < N) ? 0 : ((samples.length-N)/M)+1;
+        if(frames < MIN_PARALLEL_FRAMES || bfwr != null){
+            return analyze(samples);
+        }
+        double[][] out = new double[frames][p];
+        int grain = Math.max(frames/(4*pool.getParallelism()), 32);
+        FrameTask task;
+        this.samples = samples;
+        task = new FrameTask(out, 0, frames, grain);
+        pool.invoke(task);
+        this.samples = null;
+        if(task.failed()){
+            System.err.println("A unique solution does not exist");
+            System.exit(-1);
+        }
+        return out;
+    }
     
+    /**
+     * Analyzes a range of frames for <code>analyzeParallel()</code>, splitting it in
+     * halves until it is no longer than the grain.
+     */
+    private class FrameTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private double[][] out;
+        private int from;           // The first frame of the range
+        private int to;             // The frame after the last one of the range
+        private int grain;          // The number of frames analyzed without splitting
+        private boolean failed;     // Set if a frame of the range has no unique solution
+        private FrameTask left;
+        private FrameTask right;
+
+        FrameTask(double[][] out, int from, int to, int grain){
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        protected void compute(){
+            if(to - from <= grain){
+                LPCAnalyzer worker = worker();
+                for(int l=from;l<to;l++){
+                    worker.applyWindow(l);
+                    if(!worker.analyzeFrame()){
+                        failed = true;
+                        break;
+                    }
+                    System.arraycopy(worker.c, 1, out[l], 0, p);
+                }
+                worker.samples = null;
+            }
+            else{
+                int mid = (from + to) >>> 1;
+                left = new FrameTask(out, from, mid, grain);
+                right = new FrameTask(out, mid, to, grain);
+                invokeAll(left, right);
+            }
+        }
+
+        boolean failed(){
+            return failed || (left != null && (left.failed() || right.failed()));
+        }
+    }
+    
+    /**
+     * Sets the window applied to each frame. The Hamming window is used by default.
+     * @param function  The window function
+     */
+    public void setWindow(WindowFunction function){
+        window = function.coefficients(N);
+    }
+    
+    /**
+     * Chooses between the direct and the FFT-based auto-correlation. By default the 
+     * FFT is used when it is cheaper for the order and frame length of the analyzer.
+     * @param fft   If <code>true</code>, the auto-correlation is computed through the FFT
+     */
+    public void setFFTAutoCorrelation(boolean fft){
+        this.fft = fft;
+    }
+    
+    /**
+     * Decides whether the FFT-based auto-correlation is cheaper than the direct sum,
+     * which takes N(p+1) multiply-adds per frame. The FFT path transforms the frame, 
+     * zero-padded to L >= N+p, and its power spectrum, at a cost that grows as 
+     * L log L. The constant is found by timing both on frames of various lengths.
+     * @param p     The order in LPC
+     * @param N     The length of a frame
+     * @return      <code>true</code> if the FFT should be used
+     */
+    static boolean preferFFT(int p, int N){
+        int L = FFT.size(N + p);
+        int log = Integer.numberOfTrailingZeros(L);
+        return N > p && (double) N*(p+1) > FFT_COST * L * log;
+    }
+    
+    /**
+     * Get the power spectrum |X[k]|^2, k = 0..L/2, of the last frame analyzed, where 
+     * X is the FFT of the windowed frame zero-padded to length L. When the FFT-based 
+     * auto-correlation is in use, the spectrum is the one it computed; otherwise it 
+     * is computed on demand. The array is reused for the next frame.
+     * @return  The power spectrum of the last frame
+     */
+    public double[] getPowerSpectrum(){
+        if(!powerValid){
+            computePowerSpectrum();
+        }
+        return power;
+    }
+    
+    /**
+     * Sets the listener to which the cepstral coefficients of the frames completed
+     * by <code>push()</code> are handed.
+     * @param listener  The listener for the cepstral coefficients
+     */
+    public void setListener(CepstrumListener listener){
+        this.listener = listener;
+    }
+    
+    /**
+     * Pushes a block of sample values of any size into the analyzer. Only the last 
+     * N sample values are kept, in a ring buffer. Each time M new sample values 
+     * complete a frame, the frame is analyzed and its cepstral coefficients are 
+     * handed to the listener, so that an input of any length can be analyzed in
+     * constant memory. The frames are the same as those of <code>analyze()</code>, 
+     * except that silent frames, for which no unique solution exists, are skipped.
+     * @param block     The sample values
+     * @param offset    The position of the first sample value in <code>block</code>
+     * @param length    The number of sample values to push
+     */
+    public void push(double[] block, int offset, int length){
+        int n;
+        if(ring == null){
+            ring = new double[N];
+            reset();
+        }
+        while(length > 0){
+            // Copy up to the end of the ring or the end of the frame, whichever comes first
+            n = (int) Math.min(Math.min(length, N - ringPosition), frameEnd - pushed);
+            System.arraycopy(block, offset, ring, ringPosition, n);
+            ringPosition = (ringPosition + n == N) ? 0 : ringPosition + n;
+            pushed += n;
+            offset += n;
+            length -= n;
+            if(pushed == frameEnd){
+                applyWindowToRing();
+                if(analyzeFrame()){
+                    if(listener != null){
+                        double[] cepstrum = new double[p];
+                        System.arraycopy(c, 1, cepstrum, 0, p);
+                        listener.cepstrumExtracted(frame, cepstrum);
+                    }
+                    if(bfwr != null)
+                        writeResult();
+                }
+                frame++;
+                frameEnd += M;
+            }
+        }
+    }
+    
+    /**
+     * Discards the sample values pushed so far, so that the next sample value pushed
+     * starts a new stream.
+     */
+    public void reset(){
+        ringPosition = 0;
+        pushed = 0;
+        frame = 0;
+        frameEnd = N;
+    }
     
     /**
      * The Linear Predictive Analysis of a speech signal with <code>frame</code> frames.
      * @param frames    The number of frames to be used in LPC
+     * @param out       The array to record the cepstral coefficients of each frame in.
+     *                  <code>null</code> if they are only to be written to the output file.
      */
-    private void process(int frames){
+    private void process(int frames, double[][] out){
         for(int l=0;l<frames;l++){
-            initialize();
             applyWindow(l);
-            autoCorrelate();
-            if(r[0] == 0){
+            if(!analyzeFrame()){
                 System.err.println("A unique solution does not exist");
                 System.exit(-1);
             }
-            else{
-                e[0] = r[0];
-            }
-            LPCAnalysis();
-            extractSolution();
-            calculateCepstralCoefficients();
-            writeResult();
+            if(out != null)
+                System.arraycopy(c, 1, out[l], 0, p);
+            if(bfwr != null)
+                writeResult();
         }
     }
     
     /**
-     * Records the solutions in a separate array to be used for calculating
-     * cepstral coefficients
+     * Computes the cepstral coefficients of the windowed frame in <code>x</code>
+     * @return  <code>false</code> if the frame is silent and no unique solution exists
      */
-    private void extractSolution(){
-        for(int i=0;i<p;i++){
-            lpc[i] = alpha[i+1][p];
+    private boolean analyzeFrame(){
+        powerValid = false;
+        if(fft) autoCorrelateFFT();
+        else autoCorrelate();
+        if(r[0] == 0){
+            return false;
         }
+        LPCAnalysis(lpc, 0);
+        calculateCepstralCoefficients();
+        return true;
     }
     
     /**
-     * LPC Analysis using Durbin's algorithm
+     * LPC Analysis using Durbin's algorithm. The coefficients alpha[1..i] of order i 
+     * are obtained from those of order i-1 in place: alpha[j] and alpha[i-j] are 
+     * updated together, so only the coefficients themselves are kept. Every 
+     * coefficient is written before it is read, so nothing has to be cleared between 
+     * frames.
+     * @param a         The array to record the LP coefficients alpha[1..p] in
+     * @param offset    The position of alpha[1] in <code>a</code>
      */
-    private void LPCAnalysis(){
+    private void LPCAnalysis(double[] a, int offset){
         int i,j;
-        double sum;
+        double sum, k, lo, hi;
+        double e = r[0];            // Prediction error
+        int base = offset - 1;      // alpha[j] is at a[base+j]
         for(i = 1;i <= p;i++){
             sum = 0;
             for(j = 1;j <= i-1;j++){
-                sum += (alpha[j][i-1]*r[i-j]);
+                sum += (a[base+j]*r[i-j]);
             }
-            k[i] = (r[i] - sum)/e[i-1];
-            alpha[i][i] = k[i];
-            for(j=1;j<=i-1;j++){
-                alpha[j][i] = alpha[j][i-1] - k[i]*alpha[i-j][i-1];
+            k = (r[i] - sum)/e;     // PARCOR coefficient
+            for(j=1;j<i-j;j++){
+                lo = a[base+j];
+                hi = a[base+i-j];
+                a[base+j] = lo - k*hi;
+                a[base+i-j] = hi - k*lo;
             }
-            e[i] = (1 - k[i]*k[i]) * e[i-1];
+            if((i & 1) == 0){
+                j = i/2;
+                a[base+j] = a[base+j] - k*a[base+j];
+            }
+            a[base+i] = k;
+            e = (1 - k*k) * e;
         }
     }
     
@@ -144,9 +440,7 @@ public class LPCAnalyzer {
     private void calculateCepstralCoefficients(){
         int i,j;
         double sum;
-        for(i=0;i<c.length;i++){
-            c[i] = 0;
-        }
+        // c[0] is never written, the others only depend on those before them
         for(i=1;i<c.length;i++){
             sum = 0;
             for(j=1;j<=i-1;j++){
@@ -157,39 +451,27 @@ public class LPCAnalyzer {
     }
     
     /**
-     * Initializing the arrays x, e, k, alpha
-     */
-    private void initialize(){
-        for(int i=0;i<x.length;i++){
-            x[i] = 0;
-        }
-        for(int i=0;i<p+1;i++){
-            e[i] = k[i] = 0;
-            for(int j=0;j<p+1;j++){
-                alpha[i][j] = 0;
-            }
-        }
-    }
-    
-    /**
-     * Applies Hamming window to the frame numbered <code>L</code>
+     * Applies the window to the frame numbered <code>L</code>
      * @param L The frame number 0, 1, 2...
      */
     private void applyWindow(int L){
-        int n;
+        int n = M*L;
         for(int i = 0;i < N;i++){
-            n = M*L + i;
-            x[i] = ((Double ) s.elementAt(n)).doubleValue() * hammingWindow((double) i);
+            x[i] = samples[n + i] * window[i];
         }
     }
     
     /**
-     * Performs calculations of the Hamming function for a given <code>n</code>
-     * @param n The value for which the Hamming function has to be calculated
-     * @return  The value of the evaluated Hamming function for the given value of n
+     * Applies the window to the frame held in the ring buffer, oldest sample value first
      */
-    private double hammingWindow(double n){
-        return 0.54 - 0.46*Math.cos(2*Math.PI*n/(N-1));
+    private void applyWindowToRing(){
+        int n = N - ringPosition;
+        for(int i = 0;i < n;i++){
+            x[i] = ring[ringPosition + i] * window[i];
+        }
+        for(int i = n;i < N;i++){
+            x[i] = ring[i - n] * window[i];
+        }
     }
     
     /**
@@ -205,6 +487,54 @@ public class LPCAnalyzer {
         }
     }
     
+    /**
+     * Auto-correlation through the FFT. The auto-correlation is the inverse transform
+     * of the power spectrum. Since the power spectrum is real and even, its inverse 
+     * transform is its forward transform divided by L.
+     */
+    private void autoCorrelateFFT(){
+        int L;
+        computePowerSpectrum();
+        L = transform.size();
+        // Extend the power spectrum to the full length L
+        for(int i=0;i<=L/2;i++){
+            padded[i] = power[i];
+        }
+        for(int i=1;i<L/2;i++){
+            padded[L-i] = power[i];
+        }
+        transform.transform(padded, re, im);
+        for(int i=0;i<p+1;i++){
+            r[i] = re[i]/L;
+        }
+    }
+    
+    /**
+     * Computes the power spectrum of the windowed frame in <code>x</code>, zero-padded
+     * so that the auto-correlation up to lag p is not wrapped around.
+     */
+    private void computePowerSpectrum(){
+        int L;
+        if(transform == null){
+            transform = FFT.forSize(FFT.size(N + p));
+            L = transform.size();
+            padded = new double[L];
+            re = new double[L/2+1];
+            im = new double[L/2+1];
+            power = new double[L/2+1];
+        }
+        L = transform.size();
+        System.arraycopy(x, 0, padded, 0, N);
+        for(int i=N;i<L;i++){
+            padded[i] = 0;
+        }
+        transform.transform(padded, re, im);
+        for(int i=0;i<=L/2;i++){
+            power[i] = re[i]*re[i] + im[i]*im[i];
+        }
+        powerValid = true;
+    }
+    
     /**
      * Reads the sample values from the output of Wav2TextConverter.
      * @param filename  The name of the file containing the sample values
@@ -214,9 +544,10 @@ public class LPCAnalyzer {
     private void readSamples(String filename) throws FileNotFoundException, IOException{
         BufferedReader bfr = new BufferedReader(new FileReader(filename));
         String temp;
+        if(s == null) s = new SampleBuffer();
         while(bfr.ready()){
             temp = bfr.readLine();
-            s.addElement(Double.parseDouble(temp));
+            s.add(Double.parseDouble(temp));
         }
     }
 
@@ -231,6 +562,7 @@ public class LPCAnalyzer {
         String temp;
         StringTokenizer strtok;
         int a,b;
+        if(in == null) in = new SampleBuffer();
         while(bfr.ready()){
             temp = bfr.readLine();
             strtok = new StringTokenizer(temp,"\t");
@@ -240,9 +572,10 @@ public class LPCAnalyzer {
 
             System.out.println("Processing samples from "+a+" to "+b);
             for(int i=a;i<=b;i++){
-                in.addElement(s.elementAt(i));
+                in.add(s.get(i));
             }
-            process(((in.size()-N)/M)+1);
+            samples = in.array();
+            process(((in.size()-N)/M)+1, null);
             in.clear();
         }
     }
@@ -7,15 +7,21 @@ package SpeechRecogEngine;
 import java.io.Serializable;
 
 /**
- * Class representing a Hidden Markov Model
+ * Class representing a Hidden Markov Model. A model may be banded: state i can then 
+ * only move to states i to i+band, so the transition probabilities outside the band 
+ * are 0 and HMMAnalyzer does not visit them. Models saved before the band was 
+ * recorded are read with a band of 0, which allows any transition.
  * @author Krishna Brahmam
  */
 public class Model implements Serializable {
+    private static final long serialVersionUID = -8371799426366318084L;
+    
     private int N;          // No. of states
     private int M;          // No. of observations in each state
     private double[]  pi;   // Initial state probability distribution
     private double[][] A;   // State transition probability matrix
     private double[][] b;   // Observation probability matrix
+    private int band;       // The no. of states a state can advance by. 0 if unrestricted
     
     /**
      * Class constructor for Model
@@ -31,9 +37,11 @@ public class Model implements Serializable {
     }
     
     /**
-     * Initializes the model to a Bakis (or left-to-right) model
+     * Initializes the model to a Bakis (or left-to-right) model, in which each state
+     * can only stay or advance by one. The band is set to 1.
      */
     public void initializeModel(){
+        band = 1;
         // Initialize 'pi' matrix
         for(int i=0;i<N;i++){
             if(i==0) pi[i] = 1;
@@ -79,6 +87,81 @@ public class Model implements Serializable {
         return M;
     }
     
+    /**
+     * Get the number of states a state can advance by
+     * @return The band, or 0 if any transition is allowed
+     */
+    public int getBand(){
+        return band;
+    }
+    
+    /**
+     * Set the number of states a state can advance by. The transition probabilities 
+     * already set outside the band must be 0.
+     * @param band  The band, or 0 to allow any transition
+     */
+    public void setBand(int band){
+        if(band < 0){
+            System.err.println("Illegal band "+band);
+            System.exit(-1);
+        }
+        this.band = band;
+        for(int i=0;i<N;i++){
+            for(int j=0;j<N;j++){
+                if(A[i][j] != 0 && !allowed(i, j)){
+                    System.err.println("Transition from "+i+" to "+j+" is outside the band");
+                    System.exit(-1);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the first state that can be moved to from <code>state</code>
+     * @param state     From
+     * @return          The first state that can be moved to
+     */
+    public int firstSuccessor(int state){
+        return band == 0 ? 0 : state;
+    }
+    
+    /**
+     * Get the last state that can be moved to from <code>state</code>
+     * @param state     From
+     * @return          The last state that can be moved to
+     */
+    public int lastSuccessor(int state){
+        return band == 0 ? N-1 : Math.min(state+band, N-1);
+    }
+    
+    /**
+     * Get the first state that can move to <code>state</code>
+     * @param state     To
+     * @return          The first state that can move to <code>state</code>
+     */
+    public int firstPredecessor(int state){
+        return band == 0 ? 0 : Math.max(state-band, 0);
+    }
+    
+    /**
+     * Get the last state that can move to <code>state</code>
+     * @param state     To
+     * @return          The last state that can move to <code>state</code>
+     */
+    public int lastPredecessor(int state){
+        return band == 0 ? N-1 : state;
+    }
+    
+    /**
+     * Checks whether the band allows a transition from <code>state1</code> to <code>state2</code>
+     * @param state1    From
+     * @param state2    To
+     * @return          <code>true</code> if the transition is allowed
+     */
+    public boolean allowed(int state1, int state2){
+        return band == 0 || (state2 >= state1 && state2 <= state1+band);
+    }
+    
     /**
      * Get the value of the element at <code>index</code> in the initial state 
      * probability distribution
@@ -153,6 +236,7 @@ public class Model implements Serializable {
     
     /**
      * Set the transition probability from <code>state1</code> to <code>state2</code> to <code>val</code>.
+     * Only 0 can be set outside the band.
      * @param state1    From
      * @param state2    To
      * @param val   The new transition probability from <code>state1</code> to <code>state2</code>
@@ -162,6 +246,10 @@ public class Model implements Serializable {
             System.err.println("Illegal state number");
             System.exit(-1);
         }
+        if(val != 0 && !allowed(state1, state2)){
+            System.err.println("Transition from "+state1+" to "+state2+" is outside the band");
+            System.exit(-1);
+        }
         A[state1][state2] = val;
     }
 }
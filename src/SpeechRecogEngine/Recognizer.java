@@ -5,32 +5,33 @@ package SpeechRecogEngine;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.Scanner;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
 /**
  * Recognizes the test speech samples using Wav2TextConverter, LPCAnalyzer. 
+ * @see FeaturePipeline
  * @see Wav2TextConverter
  * @see LPCAnalyzer
  * @author Krishna Brahmam
  */
 public class Recognizer {
     
+    private static final int TREE_SIZE = 128;  // The smallest codebook searched with a CodeBookTree
+
     private int order;              // The order in the LP analysis
-    private Wav2TextConverter wv;   
+    private FeaturePipeline pipeline;
     private int frameLength;        // The length of the frame
     private int frameShift;         // The interval between successive frames
     private int min_T;              // The minimum duration of speech required to recognize
-    private LPCAnalyzer lpc;    
     private Scanner scanner;        
     private Vector input;           // The set of extracted feature vectors
-    private Vector codebook;        // The VQ codebook
-    private double[] weights;       // The set of weights to be used in Tokhura's distance
+    private FeatureMatrix codebook; // The VQ codebook
+    private TokhuraDistance kernel; // Tokhura's distance with the given set of weights
+    private CodeBookTree tree;      // The index over the codebook. null for a small codebook
     
     /**
      * Class constructor for Recognizer
@@ -38,6 +39,8 @@ public class Recognizer {
      * @param frameLength   The length of the frame
      * @param frameShift    The shift interval between two successive frames
      * @param T             The number of observation symbols in a sequence
+     * @param weights       The set of weights to be used in Tokhura's distance. 'null' for
+     *                      Euclidean distance.
      */
     public Recognizer(int order, int frameLength, int frameShift, int T, double[] weights){
         this.input = new Vector();
@@ -45,40 +48,22 @@ public class Recognizer {
         this.frameLength = frameLength;
         this.frameShift = frameShift;
         this.min_T = T;
-        this.weights = weights;
+        this.kernel = new TokhuraDistance(order, weights);
+        this.pipeline = new FeaturePipeline(order, frameLength, frameShift);
+        // Test samples are analyzed one at a time, so split the frames across cores
+        this.pipeline.setParallel(true);
     }
     
     /**
-     * Reads the sample values of the test speech signal
-     * @param file      The name of the file containing sample values of the test speech signal
+     * Records the sample values and the cepstral coefficients of each test sample
+     * in <code>obs.dat</code> and <code>cep.dat</code>. This is used for debugging.
+     * @param debug     If <code>true</code>, the intermediate files are written
      */
-    private void readInput(String file){
-        String in;
-        StringTokenizer strtok;
-
-        int i;
-        double[] temp;
-        
-        try {
-            scanner = new Scanner(new File(file)).useDelimiter("\\n");
-        } catch (FileNotFoundException ex) {
-            System.err.println("WARNING: "+ex.getMessage());
-        }
-        
-        while(scanner.hasNext()){
-            i = 0;
-            temp = new double[order];
-            in = scanner.next();
-            strtok = new StringTokenizer(in," ");
-            while(strtok.hasMoreTokens()){
-                temp[i] = Double.parseDouble(strtok.nextToken());
-                i++;
-            }
-            input.addElement(temp);
-        }
-        scanner.close();
+    public void setDebug(boolean debug){
+        if(debug) pipeline.setDebug("obs.dat", "cep.dat");
+        else pipeline.setDebug(null, null);
     }
-
+    
     /**
      * Reads input from file <code>file</code>. The input contains 'tab' as a delimiter.
      * @param file
@@ -142,13 +127,11 @@ public class Recognizer {
             in = dir +"/"+ f;
             sum = 0;
             try {
-                // Convert WAV to text (sample values)
-                wv = new Wav2TextConverter(in, "obs.dat");
-                wv.convert();
                 // Extract LPCC vectors
-                lpc = new LPCAnalyzer(order, frameShift, frameLength, "cep.dat");
-                lpc.start("obs.dat");
-                readInput("cep.dat");
+                double[][] features = pipeline.extract(in);
+                for(int i=0;i<features.length;i++){
+                    input.addElement(features[i]);
+                }
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
@@ -159,8 +142,8 @@ public class Recognizer {
                 // Obtain the observation sequences
                 temp = new int[input.size()];
                 for(int i=0;i<input.size();i++){
-                    temp[i] = q((double[]) input.elementAt(i));
-                    sum += computeDistance((double[]) input.elementAt(i),(double[]) codebook.elementAt(temp[i]));
+                    temp[i] = q((double[]) input.elementAt(i), i > 0 ? temp[i-1] : 0);
+                    sum += kernel.distance((double[]) input.elementAt(i), 0, codebook.data(), temp[i]*order);
                 }
                 observations.addElement(temp);
             }
@@ -186,8 +169,8 @@ public class Recognizer {
         readInputTab(filename);
         temp = new int[input.size()];
         for(int i=0;i<input.size();i++){
-           temp[i] = q((double[]) input.elementAt(i));
-           sum += computeDistance((double[]) input.elementAt(i),(double[]) codebook.elementAt(temp[i]));
+           temp[i] = q((double[]) input.elementAt(i), i > 0 ? temp[i-1] : 0);
+           sum += kernel.distance((double[]) input.elementAt(i), 0, codebook.data(), temp[i]*order);
         }
         sum = sum/input.size();
         System.out.println("Distortion for "+output+": "+sum);
@@ -195,73 +178,54 @@ public class Recognizer {
     }
     
     /**
-     * Reads the binary codebook
+     * Reads the binary codebook, in either format read by CodeBookFile. A codebook
+     * of <code>TREE_SIZE</code> vectors or more is indexed with a CodeBookTree, which
+     * CodeBookBenchmark found faster than the linear scan from about that size.
      * @param file      The name of the binary codebook file
      */
     private void loadCodeBook(String file){
-        ObjectInputStream inputStream = null;
         try {
-            inputStream = new ObjectInputStream(new FileInputStream(file));
-            codebook = (Vector) inputStream.readObject();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        } finally {
-            try {
-                if (inputStream != null) {
-                    inputStream.close();
+            CodeBookFile cbf = CodeBookFile.read(file);
+            if(cbf.getCodeBook().dimension() != order){
+                System.err.println("Codebook "+file+" is of order "+cbf.getCodeBook().dimension()+", not "+order);
+                System.exit(-1);
+            }
+            double[] w = cbf.getWeights();
+            for(int i=0;w != null && i<order;i++){
+                if(w[i] != kernel.getWeight(i)){
+                    System.err.println("WARNING: Codebook "+file+" was made with other weights");
+                    break;
                 }
-            } catch (IOException ex) {
-                ex.printStackTrace();
             }
+            codebook = cbf.getCodeBook();
+            tree = null;
+            if(codebook.rows() >= TREE_SIZE){
+                tree = new CodeBookTree(codebook, kernel);
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
         }
     }
     
     /**
-     * Computes the distance between two feature vectors
-     * <code>x</code> and <code>y</code>.
-     * @param x     Feature Vector 1
-     * @param y     Feature Vector 2
-     * @return      The distance between two feature vectors
-     *              <code>x</code> and <code>y</code>
-     */
-    private double computeDistance(double[] x, double[] y){
-        double sum = 0;
-        if(weights == null){
-            weights = new double[order];
-            for(int i=0;i<order;i++) weights[i] = 1;
-        }
-        if(weights.length != order){
-            System.err.println("Incorrect weights");
-            System.exit(-1);
-        }
-        for(int i=0;i<x.length;i++){
-            sum += (weights[i]*Math.pow(x[i] - y[i],2));
-        }
-        return Math.sqrt(sum);
-    }
-    
-    /**
-     * Vector quantizes the input feature vector <code>x</code>. 
+     * Vector quantizes the input feature vector <code>x</code>. The search starts from
+     * the codebook vector <code>start</code>, usually that of the previous frame, which
+     * is likely to be near. Large codebooks are searched with the tree, others are 
+     * scanned. Either way, of equally near codebook vectors, the one with the lowest 
+     * index is chosen, whatever the start.
      * @param x     The input feature vector 
+     * @param start The index of the codebook vector to start the search from
      * @return      The index of the codebook vector that represents the region the input vector
      *              lies in
      */
-    private int q(double[] x){
+    private int q(double[] x, int start){
         if(codebook == null){
             System.out.println("Codebook not loaded");
             System.exit(-1);
         }
-        int index = 0;
-        double min_distance = computeDistance((double []) codebook.elementAt(index),x);
-        double temp;
-        // Compute the distance and find out the closest codebook vector
-        for(int i=1;i<codebook.size();i++){
-            temp = computeDistance((double[])codebook.elementAt(i),x);
-            if(min_distance > temp){
-                min_distance = temp;
-                index = i;
-            }
+        if(tree != null){
+            return tree.nearest(x, 0, start);
         }
-        return index;
+        return CodeBookTree.scan(codebook, kernel, x, 0, start);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.nio.ShortBuffer;
+
+/**
+ * A growable buffer of sample values backed by a <code>double[]</code>. Used in
+ * place of a Vector of Doubles so that the samples of a speech signal are neither
+ * boxed nor synchronized on.
+ * @see Wav2TextConverter
+ * @author Krishna Brahmam
+ */
+public class SampleBuffer {
+
+    private double[] data;      // The sample values
+    private int size;           // The number of sample values in the buffer
+
+    /**
+     * Class constructor for SampleBuffer with room for one second of speech
+     */
+    public SampleBuffer(){
+        this(16000);
+    }
+
+    /**
+     * Class constructor for SampleBuffer
+     * @param capacity  The initial number of sample values the buffer can hold
+     */
+    public SampleBuffer(int capacity){
+        data = new double[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    /**
+     * Appends a sample value to the buffer
+     * @param value     The sample value
+     */
+    public void add(double value){
+        if(size == data.length){
+            ensureCapacity(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    /**
+     * Appends all the 16-bit sample values remaining in <code>samples</code> to the buffer
+     * @param samples   The sample values
+     */
+    public void add(ShortBuffer samples){
+        int n = samples.remaining();
+        int len;
+        short[] chunk = new short[Math.min(n, 4096)];
+        ensureCapacity(size + n);
+        while(samples.hasRemaining()){
+            len = Math.min(chunk.length, samples.remaining());
+            samples.get(chunk, 0, len);
+            for(int i=0;i<len;i++){
+                data[size++] = chunk[i];
+            }
+        }
+    }
+
+    /**
+     * Makes sure that the buffer can hold at least <code>capacity</code> sample values
+     * @param capacity  The number of sample values the buffer has to hold
+     */
+    public void ensureCapacity(int capacity){
+        if(capacity > data.length){
+            double[] temp = new double[Math.max(capacity, data.length*2)];
+            System.arraycopy(data, 0, temp, 0, size);
+            data = temp;
+        }
+    }
+
+    /**
+     * Get the sample value at <code>index</code>
+     * @param index     The index of the sample value
+     * @return          The sample value at <code>index</code>
+     */
+    public double get(int index){
+        if(index >= size || index < 0){
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return data[index];
+    }
+
+    /**
+     * Get the number of sample values in the buffer
+     * @return  The number of sample values in the buffer
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Removes all the sample values from the buffer
+     */
+    public void clear(){
+        size = 0;
+    }
+
+    /**
+     * Shrinks the storage of the buffer to the number of sample values held
+     */
+    public void trimToSize(){
+        if(size < data.length){
+            double[] temp = new double[size];
+            System.arraycopy(data, 0, temp, 0, size);
+            data = temp;
+        }
+    }
+
+    /**
+     * Get the storage of the buffer. Only the first <code>size()</code> elements
+     * are sample values. The array is not copied, so changes made to it are seen
+     * by the buffer.
+     * @return  The storage of the buffer
+     */
+    public double[] array(){
+        return data;
+    }
+
+    /**
+     * Performs DC-shift and normalization in place. The mean is removed from every
+     * sample value and the result is scaled so that the largest magnitude becomes
+     * <code>normalizationFactor</code>. The first pass finds the mean and the extreme
+     * values, the second one shifts and scales.
+     * @param normalizationFactor   The largest magnitude after normalization
+     */
+    public void normalize(double normalizationFactor){
+        if(size == 0) return;
+        double dc = 0;
+        double min = data[0];
+        double max = data[0];
+        double tmp;
+        for(int i=0;i<size;i++){
+            tmp = data[i];
+            dc += tmp;
+            if(tmp < min) min = tmp;
+            if(tmp > max) max = tmp;
+        }
+        dc = dc/size;
+        // The largest magnitude after the DC-shift lies at one of the extremes
+        max = Math.max(Math.abs(max - dc), Math.abs(min - dc));
+        if(max == 0){
+            for(int i=0;i<size;i++) data[i] = 0;
+            return;
+        }
+        for(int i=0;i<size;i++){
+            data[i] = ((data[i] - dc)/max) * normalizationFactor;
+        }
+    }
+
+    /**
+     * Calculate energy in an interval of the buffer
+     * @param start     The starting of the interval
+     * @param end       The ending of the interval
+     * @return          The energy in the interval
+     */
+    public double energy(int start, int end){
+        double sum = 0;
+        for(int i=start;i<end;i++){
+            sum += data[i]*data[i];
+        }
+        return sum;
+    }
+}
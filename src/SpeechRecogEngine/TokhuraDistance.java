@@ -0,0 +1,83 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+/**
+ * Tokhura's distance: the weighted Euclidean distance 
+ * sqrt(w[0](x[0]-y[0])^2 + ... + w[p-1](x[p-1]-y[p-1])^2). With all the weights 
+ * equal to 1 it is the Euclidean distance.
+ * @see DistanceKernel
+ * @author Krishna Brahmam
+ */
+public class TokhuraDistance implements DistanceKernel {
+
+    private int p;                  // The size of the feature vectors
+    private double[] weights;       // The weight of each element
+
+    /**
+     * Class constructor for TokhuraDistance
+     * @param p         The size of the feature vectors
+     * @param weights   The weight of each element. <code>null</code> for the Euclidean distance.
+     * @throws IllegalArgumentException     if there is not one non-negative weight for each element
+     */
+    public TokhuraDistance(int p, double[] weights){
+        this.p = p;
+        this.weights = new double[p];
+        if(weights == null){
+            for(int i=0;i<p;i++) this.weights[i] = 1;
+            return;
+        }
+        if(weights.length != p){
+            throw new IllegalArgumentException("Incorrect weights: "+weights.length+" weights for order "+p);
+        }
+        for(int i=0;i<p;i++){
+            if(!(weights[i] >= 0) || Double.isInfinite(weights[i])){
+                throw new IllegalArgumentException("Incorrect weights: "+weights[i]);
+            }
+            this.weights[i] = weights[i];
+        }
+    }
+
+    public double distance2(double[] x, int xo, double[] y, int yo){
+        double sum = 0;
+        double d;
+        for(int i=0;i<p;i++){
+            d = x[xo+i] - y[yo+i];
+            sum += weights[i]*(d*d);
+        }
+        return sum;
+    }
+
+    public double distance2(double[] x, int xo, double[] y, int yo, double limit){
+        double sum = 0;
+        double d;
+        // The terms are not negative, so the sum cannot come back under the limit
+        for(int i=0;i<p;i++){
+            d = x[xo+i] - y[yo+i];
+            sum += weights[i]*(d*d);
+            if(sum > limit){
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    public double distance(double[] x, int xo, double[] y, int yo){
+        return Math.sqrt(distance2(x, xo, y, yo));
+    }
+
+    public int dimension(){
+        return p;
+    }
+
+    /**
+     * Get the weight of element <code>i</code>
+     * @param i     The index of the element
+     * @return      The weight of the element
+     */
+    public double getWeight(int i){
+        return weights[i];
+    }
+}
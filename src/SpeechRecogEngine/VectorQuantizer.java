@@ -7,13 +7,12 @@ package SpeechRecogEngine;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.util.Hashtable;
 import java.util.Scanner;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import javax.swing.JOptionPane;
 
 /**
@@ -23,11 +22,26 @@ import javax.swing.JOptionPane;
 public class VectorQuantizer {
     
     private final boolean DEBUG = false;
+    private static final int BLOCK = 4096;  // The number of input vectors classified by one task
+    private static final double MARGIN = 1e-9;  // The relative margin by which a bound must hold
     
-    private Vector codebook;        // The codebook
-    private Vector input;           // Input set of feature vectors
-    private Hashtable hyperspace;   // The regions represented by the centroids in the codebook
+    private FeatureMatrix codebook; // The codebook
+    private FeatureMatrix input;    // Input set of feature vectors
     private int[] density;          // The number of vectors in each region
+    private double[] sums;          // The sum of the vectors in each region, row after row
+    private int[] assignment;       // The region each input vector is classified into
+    private double[][] blockSums;   // The sums of each block of input vectors, per region
+    private int[][] blockDensity;   // The densities of each block of input vectors, per region
+    private boolean parallel = true;
+    
+    private boolean accelerated = true; // Skip the search for input vectors whose region cannot change
+    private boolean bounded = false;    // Whether the bounds hold for the current codebook
+    private double[] distance;      // The distance of each input vector to its codebook vector
+    private double[] lower;         // A lower bound of the distance of each input vector to 
+                                    // the other codebook vectors
+    private double[] half;          // Half the distance of each codebook vector to the nearest other one
+    private double[] previous;      // The codebook the input vectors were last classified with
+    private CodeBookListener listener;  // Receives the progress of the training. null if none
     
     private int p;                  // Order of each input vector
     private double e = 0.05;        // epsilon: used in LBG while splitting 
@@ -39,7 +53,7 @@ public class VectorQuantizer {
     
     private BufferedWriter out;
     private BufferedWriter outd;
-    private double[] weights;
+    private DistanceKernel kernel;  // The distance between feature vectors
     
     /**
      * Class constructor for VectorQuantizer
@@ -49,13 +63,38 @@ public class VectorQuantizer {
      * @param weights   The weights used forin Tokhura's distance
      */
     public VectorQuantizer(int p, int M, Vector input, double[] weights){
+        this(p, M, new FeatureMatrix(input, p), weights);
+    }
+    
+    /**
+     * Class constructor for VectorQuantizer
+     * @param p         The order in LPC. Indicates the size of each input vector
+     * @param M         The size of the codebook
+     * @param input     The input set of feature vectors
+     * @param weights   The weights used forin Tokhura's distance
+     */
+    public VectorQuantizer(int p, int M, FeatureMatrix input, double[] weights){
+        this(p, M, input, new TokhuraDistance(p, weights));
+    }
+    
+    /**
+     * Class constructor for VectorQuantizer
+     * @param p         The order in LPC. Indicates the size of each input vector
+     * @param M         The size of the codebook
+     * @param input     The input set of feature vectors
+     * @param kernel    The distance between feature vectors
+     */
+    public VectorQuantizer(int p, int M, FeatureMatrix input, DistanceKernel kernel){
+        if(kernel.dimension() != p){
+            throw new IllegalArgumentException("Incorrect distance: order "+kernel.dimension()+" for order "+p);
+        }
         this.p = p;
         this.codeBookSize = M;
         this.input = input;
-        this.weights = weights;
-        this.codebook = new Vector(M);
-        this.hyperspace = new Hashtable(M);
+        this.kernel = kernel;
+        this.codebook = new FeatureMatrix(p, M);
         this.density = new int[M];
+        this.sums = new double[M*p];
         
         if(DEBUG){
             try {
@@ -69,18 +108,20 @@ public class VectorQuantizer {
     }
     
     /**
-     * Computes centroid of a region, <code>target</code>
-     * @param target    The region whose centroid is to be computed
-     * @return          The centroid vector of the <code>target</code>
+     * Computes centroid of the whole input set of vectors
+     * @return          The centroid vector of the input set of vectors
      */
-    private double[] computeCentroid(Vector target){
+    private double[] computeCentroid(){
         double[] temp = new double[p];
-        for(int i=0;i<p;i++){
-            double sum = 0;
-            for(int j=0;j<target.size();j++){
-                sum += ((double[]) target.elementAt(j))[i];
+        double[] x = input.data();
+        int n = input.rows();
+        for(int j=0;j<n*p;j+=p){
+            for(int i=0;i<p;i++){
+                temp[i] += x[j+i];
             }
-            temp[i] = sum/target.size();
+        }
+        for(int i=0;i<p;i++){
+            temp[i] = temp[i]/n;
         }
         return temp;
     }
@@ -90,13 +131,13 @@ public class VectorQuantizer {
      * codebook is twice the size of the old codebook.
      */
     private void splitCodeBook(){
-        int n = codebook.size();
+        int n = codebook.rows();
+        bounded = false;
         double[] temp;
         for(int m = 0;m < n;m++){
-            temp = new double[p];
-            java.lang.System.arraycopy(codebook.elementAt(m), 0, temp, 0, temp.length);
-            codebook.add(scaleVector(1+e,temp));
-            scaleVector(1-e,(double[]) codebook.elementAt(m));
+            temp = codebook.getRow(m);
+            codebook.addRow(scaleVector(1+e,temp));
+            codebook.setRow(m, scaleVector(1-e,codebook.getRow(m)));
         }
     }
     
@@ -115,151 +156,289 @@ public class VectorQuantizer {
     }
     
     /**
-     * Classifies the input set of vectors into regions in <code>hyperspace</code> 
+     * Sets the listener to which the progress of the training is reported. By default
+     * there is none, and nothing but the codebook is written.
+     * @param listener  The listener for the progress of the training. <code>null</code> 
+     *                  to remove it.
+     * @see ClusterWriter
+     */
+    public void setListener(CodeBookListener listener){
+        this.listener = listener;
+    }
+    
+    /**
+     * Classifies the input vectors in parallel. By default the blocks of input 
+     * vectors are classified on the common ForkJoinPool; the codebook is the same 
+     * either way.
+     * @param parallel  If <code>true</code>, the input vectors are classified in parallel
+     */
+    public void setParallel(boolean parallel){
+        this.parallel = parallel;
+    }
+    
+    /**
+     * Skips the distance computations that cannot change the region of an input vector,
+     * as in Hamerly's algorithm. The regions, and so the codebook, are the same as those
+     * of the full search. By default the search is accelerated.
+     * @param accelerated   If <code>true</code>, the search is accelerated
+     */
+    public void setAccelerated(boolean accelerated){
+        this.accelerated = accelerated;
+        this.bounded = false;
+    }
+    
+    /**
+     * Classifies the input set of vectors into the regions of the codebook vectors
      * by computing distances between input vectors and each of the codebook vectors.
+     * Only the region of each input vector, its distance to the codebook vector and 
+     * the sum and number of vectors in each region are recorded.
+     * The input vectors are classified in blocks of <code>BLOCK</code>, in parallel if
+     * enabled. Each block records the region of its vectors and its own sum and count
+     * of the vectors in each region. The block sums are then added up in block order, 
+     * so the sums, and the codebook, do not depend on the number of threads.
+     * <p>
+     * If the search is accelerated, each input vector keeps a lower bound of its distance 
+     * to all the codebook vectors but its own. Since the distance obeys the triangle 
+     * inequality, the bound is lowered by the largest movement of the other codebook 
+     * vectors since the last classification. If the input vector is nearer to its own 
+     * codebook vector than both this bound and half the distance of that codebook vector 
+     * to its nearest neighbour, its region cannot change and the search is skipped.
+     * @return  The overall average distortion for the input set of vectors and the codebook
+     */
+    private double classifyVectors(){
+        int n = input.rows();
+        int size = codebook.rows();
+        int blocks = (n + BLOCK - 1)/BLOCK;
+        if(assignment == null || assignment.length != n){
+            assignment = new int[n];
+            distance = new double[n];
+            lower = new double[n];
+            bounded = false;
+        }
+        if(blockSums == null || blockSums.length != blocks){
+            blockSums = new double[blocks][sums.length];
+            blockDensity = new int[blocks][density.length];
+        }
+        if(bounded){
+            computeBounds();
+        }
+        if(parallel && blocks > 1){
+            ForkJoinPool.commonPool().invoke(new ClassifyTask(0, blocks));
+        }
+        else{
+            for(int b=0;b<blocks;b++){
+                classifyBlock(b);
+            }
+        }
+        // Add up the sums and densities of the blocks in block order
+        for(int i=0;i<size*p;i++){
+            sums[i] = 0;
+        }
+        for(int i=0;i<size;i++){
+            density[i] = 0;
+        }
+        for(int b=0;b<blocks;b++){
+            for(int i=0;i<size*p;i++){
+                sums[i] += blockSums[b][i];
+            }
+            for(int i=0;i<size;i++){
+                density[i] += blockDensity[b][i];
+            }
+        }
+        double sum = 0;
+        for(int r=0;r<n;r++){
+            sum += distance[r];
+        }
+        // Remember the codebook so that the movement of its vectors can be measured
+        if(accelerated){
+            if(previous == null || previous.length < size*p){
+                previous = new double[sums.length];
+            }
+            System.arraycopy(codebook.data(), 0, previous, 0, size*p);
+            bounded = true;
+        }
+        return sum/n;
+    }
+    
+    /**
+     * Lowers the lower bounds of the input vectors by the movement of the codebook 
+     * vectors since the last classification, and computes half the distance of each
+     * codebook vector to the nearest other one.
+     */
+    private void computeBounds(){
+        int size = codebook.rows();
+        double[] y = codebook.data();
+        double temp;
+        double max = 0;             // The largest movement
+        double second = 0;          // The second largest movement
+        int max_index = 0;
+        for(int i=0;i<size;i++){
+            temp = kernel.distance(previous, i*p, y, i*p);
+            if(temp > max){
+                second = max;
+                max = temp;
+                max_index = i;
+            }
+            else if(temp > second){
+                second = temp;
+            }
+        }
+        for(int r=0;r<lower.length;r++){
+            lower[r] -= (assignment[r] == max_index) ? second : max;
+        }
+        if(half == null || half.length < size){
+            half = new double[density.length];
+        }
+        for(int i=0;i<size;i++){
+            half[i] = Double.POSITIVE_INFINITY;
+        }
+        for(int i=0;i<size;i++){
+            for(int j=i+1;j<size;j++){
+                temp = kernel.distance(y, i*p, y, j*p)/2;
+                if(temp < half[i]) half[i] = temp;
+                if(temp < half[j]) half[j] = temp;
+            }
+        }
+    }
+    
+    /**
+     * Classifies the input vectors of block <code>b</code> and records their sum
+     * and count in each region
+     * @param b     The index of the block
      */
-    private void classifyVectors(){
+    private void classifyBlock(int b){
         double min;
+        double next;
         double temp;
-        int index = 0;
-        Vector v;
-        for(int n=0;n<input.size();n++){
+        int index;
+        double[] x = input.data();
+        double[] y = codebook.data();
+        double[] bsums = blockSums[b];
+        int[] bdensity = blockDensity[b];
+        int size = codebook.rows();
+        int end = Math.min((b+1)*BLOCK, input.rows());
+        for(int i=0;i<size*p;i++){
+            bsums[i] = 0;
+        }
+        for(int i=0;i<size;i++){
+            bdensity[i] = 0;
+        }
+        for(int n=b*BLOCK;n<end;n++){
+            index = -1;
             min = 0;
-            // Find the minimum distance and the index of the codebook vector at which this happens
-            for(int m=0;m<codebook.size();m++){
-                temp = computeDistance((double []) (input.elementAt(n)),(double []) (codebook.elementAt(m)));
-                if(m == 0){
-                    min = temp;
-                    index = m;
-                }
-                else if(min > temp){
-                    min = temp;
-                    index = m;
+            if(bounded){
+                // The squared distances are compared with the squared bounds
+                min = kernel.distance2(x, n*p, y, assignment[n]*p);
+                temp = Math.max(half[assignment[n]], lower[n]);
+                temp -= MARGIN*temp;
+                if(min < temp*temp){
+                    // No other codebook vector can be as near
+                    index = assignment[n];
                 }
             }
-            // Classify the input vector to 'index' cell of hyperspace
-            if(density[index] == 0){
-                v = new Vector();
-                v.add(input.elementAt(n));
-                hyperspace.put(index, v);
-                density[index]++;
+            if(index < 0){
+                // Find the minimum distance and the index of the codebook vector at which this happens
+                next = Double.POSITIVE_INFINITY;
+                for(int m=0;m<size;m++){
+                    // Codebook vectors further than the second nearest so far are of no interest
+                    temp = kernel.distance2(x, n*p, y, m*p, next);
+                    if(m == 0){
+                        min = temp;
+                        index = m;
+                    }
+                    else if(min > temp){
+                        next = min;
+                        min = temp;
+                        index = m;
+                    }
+                    else if(next > temp){
+                        next = temp;
+                    }
+                }
+                lower[n] = Math.sqrt(next);
             }
-            else{
-                ((Vector) hyperspace.get(index)).add(input.elementAt(n));
-                density[index]++;                        
+            // Classify the input vector to region 'index'
+            assignment[n] = index;
+            distance[n] = Math.sqrt(min);
+            bdensity[index]++;
+            for(int i=0;i<p;i++){
+                bsums[index*p+i] += x[n*p+i];
             }
         }
     }
     
     /**
-     * Computes the Euclidean distance between two vectors <code>x</code> and <code>y</code>.
-     * @param x     
-     * @param y
-     * @return  The distance between the vectors x and y 
+     * Classifies a range of blocks of input vectors, splitting it in halves until
+     * a single block remains.
      */
-    private double computeDistance(double[] x, double[] y){
-        double sum = 0;
-        if(weights == null){
-            weights = new double[p];
-            for(int i=0;i<p;i++) weights[i] = 1;
-        }
-        if(weights.length != p){
-            System.err.println("Incorrect weights");
-            System.exit(-1);
+    private class ClassifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;           // The first block of the range
+        private int to;             // The block after the last one of the range
+
+        ClassifyTask(int from, int to){
+            this.from = from;
+            this.to = to;
         }
-        for(int i=0;i<x.length;i++){
-            sum += (weights[i]*Math.pow(x[i] - y[i],2));
+
+        protected void compute(){
+            if(to - from == 1){
+                classifyBlock(from);
+            }
+            else{
+                int mid = (from + to) >>> 1;
+                invokeAll(new ClassifyTask(from, mid), new ClassifyTask(mid, to));
+            }
         }
-        return Math.sqrt(sum);
     }
     
     /**
-     * Checks for empty cells in the hyperspace. Eliminates them by splitting the 
-     * region with highest density.
+     * Checks for empty regions. Eliminates each of them by splitting the codebook 
+     * vector of the region with highest density into (1+e)y and (1-e)y, as in LBG, 
+     * and moving one of the halves into the empty region. The input vectors are 
+     * redistributed between the two by the next classification. Until then, each 
+     * half is taken to hold half of the vectors of the region that was split.
      */
     private void checkEmptyCells(){
-        int count = 0;
-        int max_density = density[0];
-        int max_index = 0;
-        
-        // Find the cell with highest density
-        for(int i=0;i<codebook.size();i++){
-            if(density[i] > max_density){
-                max_density = density[i];
-                max_index = i;
-            }
-        }
-
-        // Find if there are empty cells
-        for(int i=0;i<codebook.size();i++){
-            Vector v;
+        int size = codebook.rows();
+        double[] y = codebook.data();
+        int max_index;
+        for(int i=0;i<size;i++){
             if(density[i] == 0){
-                // If there are empty cells, then transfer one-half of the region with highest
-                // density into the empty cell.
-                for(count = max_density/2;count>0;count--){
-                    double[] t = (double[]) ((Vector) hyperspace.get(max_index)).remove(0);
-                    density[max_index]--;
-                    if(density[i] == 0){
-                        v = new Vector();
-                        v.add(t);
-                        hyperspace.put(i,v);
-                        density[i]++;
-                    }
-                    else{
-                        ((Vector) (hyperspace.get(i))).add(t);
-                        density[i]++;                        
-                    }
-                }
-                max_density = density[0];
                 max_index = 0;
-                // Find the new region with maximum density
-                for(int j=1;j<codebook.size();j++){
-                    if(density[j] > max_density){
-                        max_density = density[j];
+                // Find the region with highest density
+                for(int j=1;j<size;j++){
+                    if(density[j] > density[max_index]){
                         max_index = j;
                     }
                 }
+                if(density[max_index] < 2){
+                    return;
+                }
+                for(int j=0;j<p;j++){
+                    y[i*p+j] = (1+e)*y[max_index*p+j];
+                    y[max_index*p+j] = (1-e)*y[max_index*p+j];
+                }
+                density[i] = density[max_index]/2;
+                density[max_index] -= density[i];
             }
         }
     }
     
     /**
-     * Update the codebook with the new centroid for each region in the hyperspace.
+     * Update the codebook with the new centroid for each region. The centroids are 
+     * obtained from the sums and densities recorded while classifying, without 
+     * another pass over the input vectors. Regions with no vectors keep their
+     * codebook vector.
      */
     private void updateCodeBook(){
-        BufferedWriter bfwr = null;
-        try {
-            Vector v;
-            for (int i = 0; i < hyperspace.size(); i++) {
-                v = (Vector) hyperspace.get(i);
-                if (v != null) {
-                    codebook.set(i, computeCentroid(v));
-                }
-                density[i] = 0;
-            }
-            bfwr = new BufferedWriter(new FileWriter("CLUSTERS.txt"));
-            double[] tmp;
-            for (int i = 0; i < hyperspace.size(); i++) {
-                v = (Vector) hyperspace.get(i);
-                bfwr.write("Cluster: "+i);
-                bfwr.newLine();
-                if (v != null) {
-                    for(int j=0;j<v.size();j++){
-                        tmp = (double[]) v.elementAt(j);
-                        bfwr.write(tmp[0]+","+tmp[1]);
-                        bfwr.newLine();
-                    }
+        double[] y = codebook.data();
+        for (int i = 0; i < codebook.rows(); i++) {
+            if (density[i] > 0) {
+                for(int j=0;j<p;j++){
+                    y[i*p+j] = sums[i*p+j]/density[i];
                 }
-                bfwr.flush();
-            }
-            hyperspace.clear();
-        } catch (IOException ex) {
-            System.err.println(ex.getMessage());
-        } finally {
-            try {
-                bfwr.close();
-            } catch (IOException ex) {
-                System.err.println(ex.getMessage());
             }
         }
     }
@@ -271,14 +450,17 @@ public class VectorQuantizer {
     private void generalizedLloydsAlgorithm() throws IOException{
         if(DEBUG)
             outd.write("\nIteration: "+iteration+"\n");
+        classifyVectors();
         do{
             oldDistortion = currentDistortion;
-            classifyVectors();
-            checkEmptyCells();
             updateCodeBook();
-            currentDistortion = computeDistortion();
+            checkEmptyCells();
+            // Classifying with the new codebook also gives its distortion
+            currentDistortion = classifyVectors();
             if(DEBUG)
                 writeDistortion(currentDistortion);
+            if(listener != null)
+                listener.iterationCompleted(iteration, currentDistortion, codebook, input, assignment);
         }while(Math.abs(currentDistortion - oldDistortion) > 0.01);
     }
     
@@ -315,27 +497,29 @@ public class VectorQuantizer {
      *          the codebook
      */
     private double computeDistortion(){
-        double[] x;
+        double[] x = input.data();
+        double[] y = codebook.data();
         double sum = 0;
-        for(int i=0;i<input.size();i++){
-            x = (double[]) input.elementAt(i);
-            sum += computeDistance(x,(double[]) codebook.elementAt( q(x) ));
+        for(int i=0;i<input.rows();i++){
+            sum += kernel.distance(x, i*p, y, q(x, i*p)*p);
         }
-        return sum/input.size();
+        return sum/input.rows();
     }
     
     /**
      * Vector Quantizer for an input vector <code>x</code>.
      * @param x     The input vector which has to be quantized
+     * @param xo    The position of the input vector in <code>x</code>
      * @return      The index of the codebook vector which is the centroid of the region 
      *              containing the vector <code>x</code>. 
      */
-    private int q(double[] x){
+    private int q(double[] x, int xo){
         int index = 0;
-        double min_distance = computeDistance((double []) codebook.elementAt(index),x);
+        double[] y = codebook.data();
+        double min_distance = kernel.distance2(y, index*p, x, xo);
         double temp;
-        for(int i=1;i<codebook.size();i++){
-            temp = computeDistance((double[])codebook.elementAt(i),x);
+        for(int i=1;i<codebook.rows();i++){
+            temp = kernel.distance2(y, i*p, x, xo, min_distance);
             if(min_distance > temp){
                 min_distance = temp;
                 index = i;
@@ -353,8 +537,8 @@ public class VectorQuantizer {
         double[] temp;
         try {
             out.write("\nIteration: "+iteration+"\n");
-            for (int i = 0; i < codebook.size(); i++) {
-                temp = (double[]) codebook.elementAt(i);
+            for (int i = 0; i < codebook.rows(); i++) {
+                temp = codebook.getRow(i);
                 for (int j = 0; j < temp.length; j++) {
                     out.write(String.format("%f",temp[j]) + " ");
                 }
@@ -369,7 +553,8 @@ public class VectorQuantizer {
     /**
      * Writes the final codebook to file <code>filename</code>. 
      * If mode is <code>true</code>, then the codebook is written in text format. If 
-     * it is <code>false</code>, then the codebook is written in binary format.
+     * it is <code>false</code>, then the codebook is written in the binary format of
+     * CodeBookFile, with the weights of the distance.
      * @param filename  The name of the codebook file
      * @param mode      The mode of the codebook. If <code>true</code>, the codebook is written 
      *                  in text format. If <code>false</code>, the codebook is written in binary format.
@@ -382,8 +567,8 @@ public class VectorQuantizer {
             System.out.println("Writing final codebook");
             try {
                 cb = new BufferedWriter(new FileWriter(filename));
-                for (int i = 0; i < codebook.size(); i++) {
-                    temp = (double[]) codebook.elementAt(i);
+                for (int i = 0; i < codebook.rows(); i++) {
+                    temp = codebook.getRow(i);
                     for (int j = 0; j < temp.length; j++) {
                         cb.write(String.format("%f",temp[j]) + " ");
                     }
@@ -397,40 +582,56 @@ public class VectorQuantizer {
         }
         else{
             // Write codebook in binary format
-            ObjectOutputStream outputStream = null;
             try {
-                outputStream = new ObjectOutputStream(new FileOutputStream(filename));
-                outputStream.writeObject(codebook);
-            } catch (FileNotFoundException ex) {
-                ex.printStackTrace();
+                CodeBookFile.write(filename, codebook, weights());
             } catch (IOException ex) {
                 ex.printStackTrace();
-            } finally {
-                try {
-                    if (outputStream != null) {
-                        outputStream.flush();
-                        outputStream.close();
-                    }
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                }
             }
         }
     }
     
+    /**
+     * Get the weights of Tokhura's distance used, to be recorded with the codebook
+     * @return  The weights, or <code>null</code> if the distance is not Tokhura's distance
+     */
+    private double[] weights(){
+        if(!(kernel instanceof TokhuraDistance)){
+            return null;
+        }
+        double[] w = new double[p];
+        for(int i=0;i<p;i++){
+            w[i] = ((TokhuraDistance) kernel).getWeight(i);
+        }
+        return w;
+    }
+    
+    /**
+     * Reports the final codebook to the listener, if any
+     */
+    private void codeBookGenerated(){
+        if(listener == null){
+            return;
+        }
+        if(assignment == null){
+            // The codebook has a single vector, whose region holds all the input vectors
+            assignment = new int[input.rows()];
+        }
+        listener.codeBookGenerated(codebook, input, assignment);
+    }
+    
     /**
      * Generates VQ codebook by carrying out LBG algorithm.
      * Records the output, i.e. the codebook itself at the end of the method.
      * @param cb        The name of the codebook file
      */
     public void generateCodeBook(String cb){
-        System.out.println("\nGenerating CodeBook for "+input.size()+" vectors");
+        System.out.println("\nGenerating CodeBook for "+input.rows()+" vectors");
         iteration = 0;
-        codebook.addElement(computeCentroid(input));
+        codebook.addRow(computeCentroid());
         if(DEBUG)
             writeCodeBook(iteration);
         try {
-            while (codebook.size() < codeBookSize) {
+            while (codebook.rows() < codeBookSize) {
                 iteration++;
                 currentDistortion = 0;
                 splitCodeBook();
@@ -446,6 +647,7 @@ public class VectorQuantizer {
             }
             writeCodeBook(cb+".txt",true);
             writeCodeBook(cb,false);
+            codeBookGenerated();
         } catch (IOException ex) {
             JOptionPane.showMessageDialog(null,ex.getMessage(),"Error",JOptionPane.ERROR_MESSAGE);
         }
@@ -460,13 +662,14 @@ public class VectorQuantizer {
      * @param initial       The initial codebook
      */
     public void generateCodeBook(String cb, int codebooksize, String initial){
-        System.out.println("\nGenerating K-CodeBook for "+input.size()+" vectors");
+        System.out.println("\nGenerating K-CodeBook for "+input.rows()+" vectors");
         //codebook.addElement(computeCentroid(input));
         readInitialCodebook(initial);
         try {
             generalizedLloydsAlgorithm();
             writeCodeBook(cb+".txt",true);
             writeCodeBook(cb,false);
+            codeBookGenerated();
         } catch (IOException ex) {
             JOptionPane.showMessageDialog(null,ex.getMessage(),"Error",JOptionPane.ERROR_MESSAGE);
         }
@@ -487,7 +690,7 @@ public class VectorQuantizer {
                 for(int i=0;i<p;i++){
                     tmp[i] = scanner.nextDouble();
                 }
-                codebook.addElement(tmp);
+                codebook.addRow(tmp);
             }
         } catch (FileNotFoundException ex) {
             System.err.println(ex.getMessage());
@@ -4,12 +4,15 @@ package SpeechRecogEngine;
  * Krishna Brahmam, Dept. of CSE, IIT Guwahati
  */
 
-import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Vector;
 
 /**
@@ -18,13 +21,15 @@ import java.util.Vector;
  */
 public class Wav2TextConverter {
     
-    private BufferedInputStream bfread;
+    private static final int MAP_THRESHOLD = 1 << 20;  // Data sections larger than this are memory-mapped
+    private static final int CHUNK_SIZE = 1 << 16;     // The size of a read when not memory-mapped
+    
+    private FileChannel channel;
+    private WavHeader header;
     private BufferedWriter bfwrite;
     private BufferedWriter bfmark;
-    private byte[] buffer;
-    private int temp;
     private int interval = 160;
-    private Vector x;
+    private SampleBuffer x;
     private Vector startMark;
     private Vector endMark;
     private double normalizationFactor = 15000;
@@ -38,13 +43,11 @@ public class Wav2TextConverter {
      */
     public Wav2TextConverter(String input, String output) throws IOException{
         try {
-            bfread = new BufferedInputStream(new FileInputStream(input));
+            channel = new FileInputStream(input).getChannel();
             bfwrite = new BufferedWriter(new FileWriter(output));
             //System.out.println(input.replaceFirst(".wav", ".lab"));
             bfmark = new BufferedWriter(new FileWriter("mark.dat"));
             
-            buffer = new byte[2];
-            x = new Vector();
             startMark = new Vector();
             endMark = new Vector();
         } catch (FileNotFoundException ex) {
@@ -52,38 +55,88 @@ public class Wav2TextConverter {
         }
     }
     
+    /**
+     * Class constructor for Wav2TextConverter without an output file. The sample
+     * values are only made available through <code>getSamples()</code>.
+     * @param input     Input file name
+     * @throws java.io.IOException
+     */
+    public Wav2TextConverter(String input) throws IOException{
+        channel = new FileInputStream(input).getChannel();
+        startMark = new Vector();
+        endMark = new Vector();
+    }
+    
     /**
      * Method to start the conversion process
      */
     public void convert(){
         try {
-            printHeader();
-            printData();
+            getSamples();
         } catch (IOException ex) {
             System.err.println(ex.getMessage());
         }
     }
-
+    
     /**
-     * Method to record the data section of a WAV file. In a WAV format, the higher byte 
-     * comes second. So, the higher byte is read second into <code>buffer[1]</code>. The lower byte
-     * which is read first is then masked with <code>0x000000FF</code> for the lower
-     * eight bits(removing the sign bit). The 16-bit data value is constructed by 
-     * shifting the higher byte by 8 bits and then ORing with the lower byte.
+     * Reads the sample values of the speech signal and performs DC-shift and 
+     * normalization on them. If an output file was given, the sample values are
+     * also written to it.
+     * @return  The normalized sample values. The array is the converter's own buffer.
+     * @throws java.io.IOException  If the file could not be read or is not 16-bit
+     *                              mono PCM at 16kHz
      */
-    private void printData(){
+    public double[] getSamples() throws IOException{
         try {
-            while (bfread.read(buffer) >= 0) {
-                temp = 0;
-                temp = buffer[1];
-                temp <<= 8;
-                temp |= (0x000000FF & buffer[0]);
-                x.addElement(new Double(temp));
-            }
-            process();
+            printHeader();
+            printData();
+        } finally {
+            channel.close();
+        }
+        process();
+        if(bfwrite != null)
             write();
-        } catch (IOException ex) {
-            System.err.println(ex.getMessage());
+        x.trimToSize();
+        return x.array();
+    }
+
+    /**
+     * Method to record the data section of a WAV file. In a WAV format, the 16-bit
+     * sample values are stored in little-endian order, so the data section is viewed 
+     * as a little-endian ShortBuffer and decoded in bulk. Large data sections are 
+     * memory-mapped. Smaller ones, such as the recordings made by AudioRecorder, are 
+     * read in large chunks so that the file is not held mapped after conversion and 
+     * can be recorded over again. Only the data chunk found by the header is read, 
+     * into a buffer of exactly the number of samples it holds.
+     * @throws java.io.IOException
+     */
+    private void printData() throws IOException{
+        long offset = header.getDataOffset();
+        long length = header.getDataLength();
+        x = new SampleBuffer(header.getNumberOfSamples());
+        if(length > MAP_THRESHOLD){
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            x.add(bytes.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer());
+        }
+        else{
+            ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ShortBuffer samples;
+            long remaining = length;
+            boolean eof = false;
+            int n;
+            channel.position(offset);
+            while(!eof){
+                bytes.limit((int) Math.min(bytes.capacity(), bytes.position() + remaining));
+                n = channel.read(bytes);
+                if(n > 0) remaining -= n;
+                eof = n < 0 || remaining == 0;
+                bytes.flip();
+                samples = bytes.asShortBuffer();
+                // Keep a trailing odd byte for the next read
+                bytes.position(bytes.position() + 2*samples.remaining());
+                x.add(samples);
+                bytes.compact();
+            }
         }
     }
 
@@ -95,7 +148,7 @@ public class Wav2TextConverter {
             int i,j;
             double tmp = 0;
             for(i=0,j=0;i<x.size();i++){
-                tmp = ((Double) x.elementAt(i)).doubleValue();
+                tmp = x.get(i);
                 if(tmp > this.normalizationFactor){
                     System.err.println("PANIC: This shouldn't happen");
                 }
@@ -120,21 +173,10 @@ public class Wav2TextConverter {
      * Performs DC-shift and normalization on the speech sample.
      */
     private void process(){
-        double dc = 0;
         double Emin = 0;
         
-        // Perform DC Shift
-        for(int i=0;i<x.size();i++)
-            dc += ((Double) x.elementAt(i)).doubleValue();
-        dc = dc/x.size();
-        
-        if(dc != 0){
-            for(int i=0;i<x.size();i++)
-                x.set(i,((Double) x.elementAt(i)) - dc);
-        }
-        
-        // Normalize
-        normalize();
+        // Perform DC Shift and normalize
+        x.normalize(normalizationFactor);
         
         /*/ Calculate Emin
         for(int i=0;i<(interval/2);i++){
@@ -185,39 +227,17 @@ public class Wav2TextConverter {
      * @return          The energy in the interval
      */
     private double energy(int start, int end){
-        double sum = 0;
-        for(int i=start;i<end;i++){
-            sum += ( (((Double) x.elementAt(i)).doubleValue()) 
-                    *(((Double) x.elementAt(i)).doubleValue())
-                   );
-        }
-        return sum;
-    }
-    
-    /**
-     * Method to normalize the input sample values before processing for LPC
-     */
-    private void normalize(){
-        double max = Math.abs(((Double) x.firstElement()).doubleValue());
-        double tmp;
-        for(int i=1;i<x.size();i++){
-            tmp = Math.abs(((Double)x.elementAt(i)).doubleValue());
-            if(max < tmp)
-                max = tmp;
-        }
-        for(int i=0;i<x.size();i++){
-            tmp = ((Double) x.elementAt(i)).doubleValue();
-            tmp = (tmp/max) * normalizationFactor;
-            x.setElementAt(tmp, i);
-        }
+        return x.energy(start, end);
     }
     
     /**
-     * Skip the header of the WAV file. The method skips the first 44 bytes of 
-     * the WAV file which is the header.
+     * Reads the header of the WAV file to locate the data section, and checks that 
+     * the samples are 16-bit mono PCM at 16kHz.
      * @throws java.io.IOException
+     * @see WavHeader
      */
     private void printHeader() throws IOException{
-        bfread.skip(44);
+        header = new WavHeader(channel);
+        header.validate();
     }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Parses the header of a WAV file. The RIFF chunks of the file are walked until the
+ * 'fmt ' and 'data' chunks are found, skipping any other chunks (LIST, fact, ...)
+ * on the way. The format is checked against the one AudioRecorder records in:
+ * 16-bit mono PCM at 16kHz.
+ * @see AudioRecorder
+ * @author Krishna Brahmam
+ */
+public class WavHeader {
+
+    private static final int WAVE_FORMAT_PCM = 0x0001;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private int formatTag;          // The audio format: 1 for PCM
+    private int channels;           // The number of channels
+    private int sampleRate;         // The number of samples per second
+    private int bitsPerSample;      // The size of a sample in bits
+    private long dataOffset = -1;   // The position of the first sample in the file
+    private long dataLength;        // The length of the data section in bytes
+
+    /**
+     * Class constructor for WavHeader. Reads the header of the WAV file open in
+     * <code>channel</code>. The position of the channel is left unchanged.
+     * @param channel   The channel of the WAV file
+     * @throws java.io.IOException  If the file is not a RIFF/WAVE file or has no
+     *                              'fmt ' or 'data' chunk
+     */
+    public WavHeader(FileChannel channel) throws IOException{
+        ByteBuffer header = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        long size = channel.size();
+        long position = 12;
+        boolean format = false;
+        int id;
+        long length;
+
+        read(channel, header, 0, 12);
+        if(header.getInt(0) != tag("RIFF") || header.getInt(8) != tag("WAVE")){
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+        while(position + 8 <= size){
+            read(channel, header, position, 8);
+            id = header.getInt(0);
+            length = header.getInt(4) & 0xFFFFFFFFL;
+            position += 8;
+            if(id == tag("fmt ")){
+                if(length < 16){
+                    throw new IOException("Malformed 'fmt ' chunk");
+                }
+                read(channel, header, position, (int) Math.min(length, header.capacity()));
+                formatTag = header.getShort(0) & 0xFFFF;
+                channels = header.getShort(2) & 0xFFFF;
+                sampleRate = header.getInt(4);
+                bitsPerSample = header.getShort(14) & 0xFFFF;
+                // The actual format of an extensible 'fmt ' chunk is in its sub-format
+                if(formatTag == WAVE_FORMAT_EXTENSIBLE && length >= 26){
+                    formatTag = header.getShort(24) & 0xFFFF;
+                }
+                format = true;
+            }
+            else if(id == tag("data")){
+                // Files that were not closed properly may claim more data than they hold
+                dataOffset = position;
+                dataLength = Math.min(length, size - position);
+                break;
+            }
+            // Chunks are padded to an even length
+            position += length + (length & 1);
+        }
+        if(!format){
+            throw new IOException("No 'fmt ' chunk in WAV file");
+        }
+        if(dataOffset < 0){
+            throw new IOException("No 'data' chunk in WAV file");
+        }
+    }
+
+    /**
+     * Checks that the WAV file holds 16-bit mono PCM sampled at 16kHz, the format
+     * AudioRecorder records in.
+     * @throws java.io.IOException  If the format is different
+     */
+    public void validate() throws IOException{
+        if(formatTag != WAVE_FORMAT_PCM
+                || channels != AudioRecorder.channels
+                || sampleRate != (int) AudioRecorder.sampleRate
+                || bitsPerSample != AudioRecorder.bitSize){
+            throw new IOException("Unsupported WAV format: " + bitsPerSample + "-bit, "
+                    + channels + " channel(s), " + sampleRate + "Hz, format " + formatTag
+                    + ". Expected " + AudioRecorder.bitSize + "-bit mono PCM at "
+                    + (int) AudioRecorder.sampleRate + "Hz");
+        }
+    }
+
+    /**
+     * Get the position of the first sample in the file
+     * @return  The offset of the data section in bytes
+     */
+    public long getDataOffset(){
+        return dataOffset;
+    }
+
+    /**
+     * Get the length of the data section
+     * @return  The length of the data section in bytes
+     */
+    public long getDataLength(){
+        return dataLength;
+    }
+
+    /**
+     * Get the number of samples in the data section
+     * @return  The number of samples in the data section
+     */
+    public int getNumberOfSamples(){
+        return (int) (dataLength / (channels * ((bitsPerSample + 7) / 8)));
+    }
+
+    /**
+     * Get the number of samples per second
+     * @return  The sample rate
+     */
+    public int getSampleRate(){
+        return sampleRate;
+    }
+
+    /**
+     * Get the size of a sample
+     * @return  The size of a sample in bits
+     */
+    public int getBitsPerSample(){
+        return bitsPerSample;
+    }
+
+    /**
+     * Get the number of channels
+     * @return  The number of channels
+     */
+    public int getChannels(){
+        return channels;
+    }
+
+    /**
+     * Reads <code>length</code> bytes at <code>position</code> into the start of <code>buffer</code>
+     * @param channel   The channel to read from
+     * @param buffer    The buffer to read into
+     * @param position  The position in the file to read from
+     * @param length    The number of bytes to read
+     * @throws java.io.IOException  If the file ends before <code>length</code> bytes are read
+     */
+    private void read(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException{
+        int n;
+        buffer.clear();
+        buffer.limit(length);
+        while(buffer.hasRemaining()){
+            n = channel.read(buffer, position + buffer.position());
+            if(n < 0){
+                throw new IOException("Unexpected end of WAV header");
+            }
+        }
+    }
+
+    /**
+     * Get the little-endian integer value of a four character chunk identifier
+     * @param id    The chunk identifier
+     * @return      The value of the identifier as read from the file
+     */
+    private static int tag(String id){
+        return (id.charAt(0)) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+    }
+}
@@ -0,0 +1,68 @@
+package SpeechRecogEngine;
+/*
+ * This code belongs to
+ * Krishna Brahmam, Dept. of CSE, IIT Guwahati
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The window functions that can be applied to a frame in LPCAnalyzer. The
+ * coefficients of a window are computed once for each frame length and shared
+ * by all the analyzers using it.
+ * @see LPCAnalyzer
+ * @author Krishna Brahmam
+ */
+public enum WindowFunction {
+
+    /** The Hamming window: 0.54 - 0.46cos(2*pi*n/(N-1)) */
+    HAMMING {
+        double value(double n, int N){
+            return 0.54 - 0.46*Math.cos(2*Math.PI*n/(N-1));
+        }
+    },
+
+    /** The Hann window: 0.5 - 0.5cos(2*pi*n/(N-1)) */
+    HANN {
+        double value(double n, int N){
+            return 0.5 - 0.5*Math.cos(2*Math.PI*n/(N-1));
+        }
+    },
+
+    /** The Blackman window: 0.42 - 0.5cos(2*pi*n/(N-1)) + 0.08cos(4*pi*n/(N-1)) */
+    BLACKMAN {
+        double value(double n, int N){
+            return 0.42 - 0.5*Math.cos(2*Math.PI*n/(N-1)) + 0.08*Math.cos(4*Math.PI*n/(N-1));
+        }
+    };
+
+    // The coefficients computed so far, by frame length
+    private final ConcurrentHashMap<Integer, double[]> cache = new ConcurrentHashMap<Integer, double[]>();
+
+    /**
+     * Evaluates the window function
+     * @param n     The position in the frame
+     * @param N     The length of the frame
+     * @return      The value of the window function at <code>n</code>
+     */
+    abstract double value(double n, int N);
+
+    /**
+     * Get the coefficients of the window for a frame of length <code>N</code>. The
+     * array returned is shared and must not be modified.
+     * @param N     The length of the frame
+     * @return      The values of the window function at 0, 1, ... N-1
+     */
+    public double[] coefficients(int N){
+        double[] w = cache.get(N);
+        if(w == null){
+            w = new double[N];
+            for(int i=0;i<N;i++){
+                w[i] = value((double) i, N);
+            }
+            double[] previous = cache.putIfAbsent(N, w);
+            if(previous != null) w = previous;
+        }
+        return w;
+    }
+}